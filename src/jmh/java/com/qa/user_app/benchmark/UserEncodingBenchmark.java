@@ -0,0 +1,99 @@
+package com.qa.user_app.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.qa.user_app.service.UserService;
+import com.qa.user_app.service.dto.UserDTO;
+
+// Writing and reading a page of users in each format GET /user can answer with
+// - json, smile and cbor are the message converters' formats (see ApplicationConfiguration),
+//   json-gzip is JSON as Tomcat sends it to a client that accepts gzip
+// - the size of each encoding is printed once at setup, the benchmarks give the time
+//   mvn -P jmh test-compile exec:exec -Djmh.args="UserEncodingBenchmark -p pageSize=500"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserEncodingBenchmark {
+
+	@Param({ "json", "json-gzip", "smile", "cbor" })
+	public String format;
+
+	@Param({ "" + UserService.DEFAULT_PAGE_SIZE, "" + UserService.MAX_PAGE_SIZE })
+	public int pageSize;
+
+	private ObjectWriter writer;
+	private ObjectReader reader;
+	private boolean gzip;
+
+	private List<UserDTO> page;
+	private byte[] encoded;
+
+	@Setup
+	public void setup() throws Exception {
+		ObjectMapper objectMapper;
+		switch (format) {
+		case "smile":
+			objectMapper = Jackson2ObjectMapperBuilder.smile().build();
+			break;
+		case "cbor":
+			objectMapper = Jackson2ObjectMapperBuilder.cbor().build();
+			break;
+		default:
+			objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		}
+		gzip = format.endsWith("-gzip");
+		TypeReference<List<UserDTO>> listType = new TypeReference<List<UserDTO>>() {
+		};
+		writer = objectMapper.writerFor(listType);
+		reader = objectMapper.readerFor(listType);
+
+		page = new ArrayList<>(pageSize);
+		for (int i = 1; i <= pageSize; i++) {
+			page.add(new UserDTO(i, "Forename" + i, "Surname" + (i % 37), 18 + i % 100));
+		}
+		encoded = writer.writeValueAsBytes(page);
+		System.out.printf("%n%s, %d users: %d bytes%n", format, pageSize, encode().length);
+	}
+
+	@Benchmark
+	public byte[] encode() throws Exception {
+		if (!gzip) {
+			return writer.writeValueAsBytes(page);
+		}
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+			writer.writeValue(out, page);
+		}
+		return compressed.toByteArray();
+	}
+
+	// only the uncompressed bytes are decoded, a client decompresses json-gzip before parsing it
+	@Benchmark
+	public List<UserDTO> decode() throws Exception {
+		return reader.readValue(encoded);
+	}
+}
@@ -0,0 +1,97 @@
+package com.qa.user_app.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.service.UserService;
+
+// Reading and writing users as JSON, as the controller's message converters do
+// - the ObjectMapper is configured like spring boot's, reused readers/writers are compared to
+//   going through the ObjectMapper on every call
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserJsonBenchmark {
+
+	private ObjectMapper objectMapper;
+	private ObjectWriter userWriter;
+	private ObjectReader userReader;
+	private ObjectWriter listWriter;
+	private ObjectReader listReader;
+
+	private User user;
+	private byte[] userJson;
+	// a full default page of users
+	private List<User> page;
+	private byte[] pageJson;
+
+	@Setup
+	public void setup() throws Exception {
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		userWriter = objectMapper.writerFor(User.class);
+		userReader = objectMapper.readerFor(User.class);
+		TypeReference<List<User>> listType = new TypeReference<List<User>>() {
+		};
+		listWriter = objectMapper.writerFor(listType);
+		listReader = objectMapper.readerFor(listType);
+
+		user = new User(1, "Fred", "Daly", 32);
+		userJson = objectMapper.writeValueAsBytes(user);
+		page = new ArrayList<>(UserService.DEFAULT_PAGE_SIZE);
+		for (int i = 1; i <= UserService.DEFAULT_PAGE_SIZE; i++) {
+			page.add(new User(i, "Forename" + i, "Surname" + i, 18 + i % 100));
+		}
+		pageJson = objectMapper.writeValueAsBytes(page);
+	}
+
+	@Benchmark
+	public byte[] serializeUser() throws Exception {
+		return objectMapper.writeValueAsBytes(user);
+	}
+
+	@Benchmark
+	public byte[] serializeUserWithWriter() throws Exception {
+		return userWriter.writeValueAsBytes(user);
+	}
+
+	@Benchmark
+	public User deserializeUser() throws Exception {
+		return objectMapper.readValue(userJson, User.class);
+	}
+
+	@Benchmark
+	public User deserializeUserWithReader() throws Exception {
+		return userReader.readValue(userJson);
+	}
+
+	@Benchmark
+	public byte[] serializePage() throws Exception {
+		return listWriter.writeValueAsBytes(page);
+	}
+
+	@Benchmark
+	public List<User> deserializePage() throws Exception {
+		return listReader.readValue(pageJson);
+	}
+}
@@ -0,0 +1,90 @@
+package com.qa.user_app.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.qa.user_app.controller.UserMapper;
+import com.qa.user_app.controller.request_object.UserRequest;
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.service.UserService;
+import com.qa.user_app.service.dto.UserDTO;
+
+// The controller's UserMapper against ModelMapper (reflection based, which the application
+// used to register as a bean) for both directions, and for a full page of users
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserMappingBenchmark {
+
+	private ModelMapper modelMapper;
+	private UserMapper userMapper;
+
+	private User user;
+	private UserRequest request;
+	private List<User> page;
+
+	@Setup
+	public void setup() {
+		modelMapper = new ModelMapper();
+		userMapper = new UserMapper();
+		user = new User(1, "Fred", "Daly", 32);
+		request = new UserRequest("Fred", "Daly", 32);
+		page = new ArrayList<>(UserService.DEFAULT_PAGE_SIZE);
+		for (int i = 1; i <= UserService.DEFAULT_PAGE_SIZE; i++) {
+			page.add(new User(i, "Forename" + i, "Surname" + i, 18 + i % 100));
+		}
+		// the first map builds and caches the type maps, it isn't part of the steady state
+		modelMapper.map(user, UserDTO.class);
+		modelMapper.map(request, User.class);
+	}
+
+	@Benchmark
+	public UserDTO toDTOModelMapper() {
+		return modelMapper.map(user, UserDTO.class);
+	}
+
+	@Benchmark
+	public UserDTO toDTOUserMapper() {
+		return userMapper.toDTO(user);
+	}
+
+	@Benchmark
+	public User toUserModelMapper() {
+		return modelMapper.map(request, User.class);
+	}
+
+	@Benchmark
+	public User toUserUserMapper() {
+		return userMapper.toUser(request);
+	}
+
+	@Benchmark
+	public List<UserDTO> pageModelMapper() {
+		List<UserDTO> dtos = new ArrayList<>(page.size());
+		for (User user : page) {
+			dtos.add(modelMapper.map(user, UserDTO.class));
+		}
+		return dtos;
+	}
+
+	@Benchmark
+	public List<UserDTO> pageUserMapper() {
+		return userMapper.toDTOs(page);
+	}
+}
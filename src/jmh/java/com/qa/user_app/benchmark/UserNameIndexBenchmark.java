@@ -0,0 +1,81 @@
+package com.qa.user_app.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.service.UserNameIndex;
+import com.qa.user_app.service.event.UserSavedEvent;
+
+// GET /user/suggest lookups against a UserNameIndex of "users" generated users
+// - sampled, so JMH reports the latency percentiles (p99 should stay well under a millisecond)
+// - names are random syllables, giving a realistic spread of shared prefixes and trigrams
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserNameIndexBenchmark {
+
+	private static final String[] SYLLABLES = { "an", "be", "car", "da", "el", "fre", "ga", "hol", "is", "jo", "ka",
+			"li", "ma", "ne", "ol", "pe", "ri", "sa", "ton", "vi", "wil", "ya", "zo" };
+
+	@Param({ "1000000" })
+	private int users;
+
+	private UserNameIndex index;
+
+	@Setup
+	public void setup() {
+		// filled through events, as UserService does, so no database is needed
+		index = new UserNameIndex(null, null, null);
+		Random random = new Random(42);
+		for (int id = 1; id <= users; id++) {
+			index.userSaved(new UserSavedEvent(new User(id, name(random), name(random), 18 + random.nextInt(100))));
+		}
+	}
+
+	private static String name(Random random) {
+		StringBuilder name = new StringBuilder();
+		int syllables = 2 + random.nextInt(2);
+		for (int i = 0; i < syllables; i++) {
+			name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+		}
+		return name.toString();
+	}
+
+	@Benchmark
+	public List<User> shortPrefix() {
+		return index.suggest("fr", UserNameIndex.DEFAULT_SUGGESTIONS);
+	}
+
+	@Benchmark
+	public List<User> longPrefix() {
+		return index.suggest("fredaton", UserNameIndex.DEFAULT_SUGGESTIONS);
+	}
+
+	@Benchmark
+	public List<User> twoWords() {
+		return index.suggest("fre sa", UserNameIndex.DEFAULT_SUGGESTIONS);
+	}
+
+	@Benchmark
+	public List<User> typo() {
+		// no name contains "q", so this always falls through to the edit distance search
+		return index.suggest("fredqton", UserNameIndex.DEFAULT_SUGGESTIONS);
+	}
+}
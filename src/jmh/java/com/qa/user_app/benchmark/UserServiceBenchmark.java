@@ -0,0 +1,153 @@
+package com.qa.user_app.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.qa.user_app.UserApp1Application;
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.execptions.UserNotFoundException;
+import com.qa.user_app.service.UserService;
+import com.qa.user_app.service.UserSort;
+import com.qa.user_app.service.dto.UserPage;
+
+// UserService against the embedded H2 database of the dev profile
+// - the whole application is started once per fork (without a web server) and the table is
+//   filled with "users" rows, so these include the cache, transaction and hibernate overheads
+// - the uncached lookup clears the cache every call, which is also measured, and waits for the
+//   batch loader's window (user.batch-loader.window), compare it to getByIdCached rather than
+//   reading it as a pure database number
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+	@Param({ "10000" })
+	private int users;
+
+	private ConfigurableApplicationContext context;
+	private UserService userService;
+	private CacheManager cacheManager;
+
+	private int firstId;
+	private int lastId;
+	private int deletedId;
+	private List<User> batch;
+
+	@Setup
+	public void setup() {
+		context = new SpringApplicationBuilder(UserApp1Application.class)
+				.web(WebApplicationType.NONE)
+				// the dev profile logs every statement and bind parameter, which would dominate
+				// - passed as arguments, as those override application.properties
+				.run("--logging.level.root=WARN", "--spring.jpa.show-sql=false", "--logging.level.org.hibernate.SQL=OFF",
+						"--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=OFF");
+		userService = context.getBean(UserService.class);
+		cacheManager = context.getBean(CacheManager.class);
+
+		List<User> rows = new ArrayList<>(UserService.MAX_CREATE_ALL_SIZE);
+		for (int i = 0; i < users; i++) {
+			rows.add(newUser(i));
+			if (rows.size() == UserService.MAX_CREATE_ALL_SIZE || i == users - 1) {
+				List<User> saved = userService.createAll(rows);
+				if (firstId == 0) {
+					firstId = saved.get(0).getId();
+				}
+				lastId = saved.get(saved.size() - 1).getId();
+				rows = new ArrayList<>(UserService.MAX_CREATE_ALL_SIZE);
+			}
+		}
+
+		// a user that existed once, the id filter has forgotten it and no other user will get its id
+		deletedId = userService.create(newUser(users)).getId();
+		userService.delete(deletedId, null);
+		getByAbsentId();
+
+		batch = new ArrayList<>(UserService.INSERT_BATCH_SIZE);
+		for (int i = 0; i < UserService.INSERT_BATCH_SIZE; i++) {
+			batch.add(newUser(i));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	private static User newUser(int i) {
+		return new User("Forename" + i, "Surname" + i, 18 + i % 100);
+	}
+
+	private int randomId() {
+		return ThreadLocalRandom.current().nextInt(firstId, lastId + 1);
+	}
+
+	@Benchmark
+	public User getByIdCached() {
+		// the ids are drawn from the first 100 so they are all cached after warm up
+		return userService.getById(firstId + ThreadLocalRandom.current().nextInt(100));
+	}
+
+	@Benchmark
+	public User getByIdUncached() {
+		cacheManager.getCache(UserService.USER_CACHE).clear();
+		return userService.getById(randomId());
+	}
+
+	@Benchmark
+	public Object getByAbsentId() {
+		// a deleted user, the id filter answers without a query
+		try {
+			userService.getById(deletedId);
+		} catch (UserNotFoundException e) {
+			return e;
+		}
+		throw new IllegalStateException("User with id " + deletedId + " should have been deleted");
+	}
+
+	@Benchmark
+	public UserPage getPageById() {
+		return userService.getPage(randomId(), UserService.DEFAULT_PAGE_SIZE, UserSort.ID);
+	}
+
+	@Benchmark
+	public UserPage getPageBySurname() {
+		return userService.getPage(randomId(), UserService.DEFAULT_PAGE_SIZE, UserSort.SURNAME);
+	}
+
+	@Benchmark
+	public User create() {
+		return userService.create(newUser(0));
+	}
+
+	@Benchmark
+	public List<User> createAll() {
+		// new instances every call, createAll assigns ids to the ones it is given
+		List<User> users = new ArrayList<>(batch.size());
+		for (User user : batch) {
+			users.add(new User(user.getForename(), user.getSurname(), user.getAge()));
+		}
+		return userService.createAll(users);
+	}
+}
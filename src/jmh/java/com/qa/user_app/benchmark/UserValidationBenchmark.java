@@ -0,0 +1,75 @@
+package com.qa.user_app.benchmark;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.qa.user_app.controller.request_object.UserRequest;
+import com.qa.user_app.data.entity.User;
+
+// Bean validation of request bodies, what @Valid costs on every POST and PUT
+// - an invalid user is measured separately as building the violations is the expensive part
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserValidationBenchmark {
+
+	private ValidatorFactory validatorFactory;
+	private Validator validator;
+
+	private User validUser;
+	private User invalidUser;
+	private UserRequest validRequest;
+
+	@Setup
+	public void setup() {
+		validatorFactory = Validation.buildDefaultValidatorFactory();
+		validator = validatorFactory.getValidator();
+
+		validUser = new User("Fred", "Daly", 32);
+		invalidUser = new User("", "Daly", 12);
+		validRequest = new UserRequest();
+		validRequest.setForename("Fred");
+		validRequest.setSurname("Daly");
+		validRequest.setAge(32);
+	}
+
+	@TearDown
+	public void tearDown() {
+		validatorFactory.close();
+	}
+
+	@Benchmark
+	public Set<ConstraintViolation<User>> validateUser() {
+		return validator.validate(validUser);
+	}
+
+	@Benchmark
+	public Set<ConstraintViolation<User>> validateInvalidUser() {
+		return validator.validate(invalidUser);
+	}
+
+	@Benchmark
+	public Set<ConstraintViolation<UserRequest>> validateUserRequest() {
+		return validator.validate(validRequest);
+	}
+}
@@ -0,0 +1,312 @@
+package com.qa.user_app.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.service.UserService;
+
+// Closed loop load test of /user over HTTP, run with
+//   mvn -P load test
+//   mvn -P load test -Dload.clients=64 -Dload.duration=60s -Dload.mix=get=90,put=10
+//   mvn -P load test -Dload.read-path=/reactive/user -Dload.mix=get=60,list=20,search=20
+// - starts the application on a random port (on its own in-memory database) and seeds it with
+//   load.users users, generated from load.seed so every run reads the same data
+// - load.clients threads each send a request, wait for the answer and send the next, for
+//   load.warmup (not measured) and then load.duration
+// - each request is picked at random by weight from load.mix:
+//   get (GET /user/{id}), list (GET /user, a page after a random id), search (GET /user/search
+//   by surname), post (POST /user), put (PUT /user/{id}) and delete (DELETE /user/{id}, of a
+//   user the client created, so reads of seeded users never miss)
+// - reads (get, list and search) go to load.read-path, /user by default, /async/user or
+//   /reactive/user compare the same reads on the other stacks, writes always go to /user
+// - reports the throughput and the p50/p99/p999/max latency of each kind of request, then
+//   fails if any request didn't succeed, other than those shed by admission control (a 503)
+// - being closed loop, a slow response also delays the requests behind it, so the latencies
+//   are those seen by load.clients busy clients rather than by a fixed arrival rate
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:loadDB",
+		"user.reactive.url=r2dbc:h2:mem:///loadDB",
+		"logging.level.org.hibernate.SQL=off" })
+@DirtiesContext
+public class UserLoadTest {
+
+	enum Operation {
+		GET, LIST, SEARCH, POST, PUT, DELETE
+	}
+
+	private static final String[] SYLLABLES = { "an", "be", "car", "da", "el", "fre", "ga", "hol", "is", "jo", "ka",
+			"li", "ma", "ne", "ol", "pe", "ri", "sa", "ton", "vi", "wil", "ya", "zo" };
+
+	private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+
+	// latencies are recorded in microseconds, up to a minute
+	private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+	private final int clients = Integer.getInteger("load.clients", 32);
+
+	private final int users = Integer.getInteger("load.users", 10000);
+
+	private final long seed = Long.getLong("load.seed", 42);
+
+	private final Duration warmup = DurationStyle.detectAndParse(System.getProperty("load.warmup", "10s"));
+
+	private final Duration duration = DurationStyle.detectAndParse(System.getProperty("load.duration", "30s"));
+
+	private final String readPath = System.getProperty("load.read-path", "/user");
+
+	private final Map<Operation, Integer> mix = parseMix(
+			System.getProperty("load.mix", "get=60,list=10,search=10,post=8,put=8,delete=4"));
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private UserService userService;
+
+	private List<Integer> seededIds;
+
+	private HttpClient httpClient;
+
+	@BeforeEach
+	public void seed() {
+		Random random = new Random(seed);
+		seededIds = new ArrayList<>(users);
+		List<User> chunk = new ArrayList<>(UserService.MAX_CREATE_ALL_SIZE);
+		for (int i = 0; i < users; i++) {
+			chunk.add(randomUser(random));
+			if (chunk.size() == UserService.MAX_CREATE_ALL_SIZE || i == users - 1) {
+				userService.createAll(chunk).forEach(user -> seededIds.add(user.getId()));
+				chunk.clear();
+			}
+		}
+		httpClient = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofSeconds(5))
+				.executor(Executors.newFixedThreadPool(Math.max(2, clients / 4)))
+				.build();
+	}
+
+	@Test
+	public void loadTest() throws Exception {
+		long start = System.nanoTime();
+		long measureFrom = start + warmup.toNanos();
+		long end = measureFrom + duration.toNanos();
+		ExecutorService executor = Executors.newFixedThreadPool(clients);
+		List<Future<Client>> results = new ArrayList<>(clients);
+		for (int i = 0; i < clients; i++) {
+			Client client = new Client(new Random(seed + 1 + i));
+			results.add(executor.submit(() -> client.run(measureFrom, end)));
+		}
+		Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+		Map<Operation, Long> failures = new EnumMap<>(Operation.class);
+		Map<Operation, Long> shed = new EnumMap<>(Operation.class);
+		for (Future<Client> result : results) {
+			Client client = result.get();
+			client.latencies.forEach((operation, histogram) -> latencies
+					.computeIfAbsent(operation, key -> new Histogram(MAX_LATENCY_MICROS, 3))
+					.add(histogram));
+			client.failures.forEach((operation, count) -> failures.merge(operation, count, Long::sum));
+			client.shed.forEach((operation, count) -> shed.merge(operation, count, Long::sum));
+		}
+		executor.shutdown();
+
+		report(latencies, failures, shed);
+		assertThat(failures).as("requests that failed").isEmpty();
+	}
+
+	private void report(Map<Operation, Histogram> latencies, Map<Operation, Long> failures,
+			Map<Operation, Long> shed) {
+		double seconds = duration.toNanos() / 1e9;
+		Histogram all = new Histogram(MAX_LATENCY_MICROS, 3);
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%n%d clients, %d users, %s warmup, %s measured, mix %s, reads from %s%n",
+				clients, users, warmup, duration, mix, readPath));
+		report.append(String.format("%-8s %10s %10s %8s %8s %10s %10s %10s %10s%n", "request", "count", "req/s",
+				"failed", "shed", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+		for (Operation operation : Operation.values()) {
+			Histogram histogram = latencies.get(operation);
+			if (histogram != null) {
+				all.add(histogram);
+				report.append(row(operation.name(), histogram, failures.getOrDefault(operation, 0L),
+						shed.getOrDefault(operation, 0L), seconds));
+			}
+		}
+		report.append(row("ALL", all, failures.values().stream().mapToLong(Long::longValue).sum(),
+				shed.values().stream().mapToLong(Long::longValue).sum(), seconds));
+		System.out.println(report);
+	}
+
+	private static String row(String name, Histogram histogram, long failed, long shed, double seconds) {
+		return String.format("%-8s %10d %10.1f %8d %8d %10.3f %10.3f %10.3f %10.3f%n", name,
+				histogram.getTotalCount(), histogram.getTotalCount() / seconds, failed, shed,
+				histogram.getValueAtPercentile(50) / 1000.0,
+				histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+				histogram.getMaxValue() / 1000.0);
+	}
+
+	private static Map<Operation, Integer> parseMix(String mix) {
+		Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+		for (String entry : mix.split(",")) {
+			String[] parts = entry.trim().split("=");
+			weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+		}
+		return weights;
+	}
+
+	private static User randomUser(Random random) {
+		return new User(name(random), name(random), 18 + random.nextInt(100));
+	}
+
+	private static String name(Random random) {
+		StringBuilder name = new StringBuilder();
+		int syllables = 2 + random.nextInt(2);
+		for (int i = 0; i < syllables; i++) {
+			name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+		}
+		return name.toString();
+	}
+
+	// One closed loop client, its histograms are only read once it has finished
+	private class Client {
+
+		private final Random random;
+
+		private final int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+
+		private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+
+		private final Map<Operation, Long> failures = new EnumMap<>(Operation.class);
+
+		// turned away with a 503 by admission control, which isn't a failure
+		private final Map<Operation, Long> shed = new EnumMap<>(Operation.class);
+
+		// users this client created and hasn't deleted yet
+		private final Deque<Integer> createdIds = new ArrayDeque<>();
+
+		private Client(Random random) {
+			this.random = random;
+		}
+
+		private Client run(long measureFrom, long end) {
+			long now;
+			while ((now = System.nanoTime()) < end) {
+				Operation operation = pick();
+				HttpRequest request = request(operation);
+				boolean succeeded;
+				boolean rejected = false;
+				String body = null;
+				long sent = System.nanoTime();
+				try {
+					HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+					succeeded = response.statusCode() / 100 == 2;
+					rejected = response.statusCode() == 503;
+					body = response.body();
+				} catch (IOException e) {
+					succeeded = false;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				long latencyMicros = (System.nanoTime() - sent) / 1000;
+				if (operation == Operation.POST && succeeded) {
+					Matcher id = ID.matcher(body);
+					if (id.find()) {
+						createdIds.add(Integer.valueOf(id.group(1)));
+					}
+				}
+				if (now < measureFrom) {
+					continue;
+				}
+				latencies.computeIfAbsent(operation, key -> new Histogram(MAX_LATENCY_MICROS, 3))
+						.recordValue(Math.min(latencyMicros, MAX_LATENCY_MICROS));
+				if (rejected) {
+					shed.merge(operation, 1L, Long::sum);
+				} else if (!succeeded) {
+					failures.merge(operation, 1L, Long::sum);
+				}
+			}
+			return this;
+		}
+
+		private Operation pick() {
+			int choice = random.nextInt(totalWeight);
+			for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+				choice -= entry.getValue();
+				if (choice < 0) {
+					// nothing of our own to delete yet, create something instead
+					return entry.getKey() == Operation.DELETE && createdIds.isEmpty() ? Operation.POST
+							: entry.getKey();
+				}
+			}
+			throw new IllegalStateException("Unreachable");
+		}
+
+		private HttpRequest request(Operation operation) {
+			int seededId = seededIds.get(random.nextInt(seededIds.size()));
+			switch (operation) {
+			case GET:
+				return get(readPath + "/" + seededId);
+			case LIST:
+				return get(readPath + "?limit=50&after=" + seededId);
+			case SEARCH:
+				return get(readPath + "/search?limit=50&surname=" + name(random));
+			case POST:
+				return send("POST", "/user", randomUser(random));
+			case PUT:
+				return send("PUT", "/user/" + seededId, randomUser(random));
+			case DELETE:
+				return HttpRequest.newBuilder(uri("/user/" + createdIds.poll())).DELETE().build();
+			default:
+				throw new IllegalArgumentException(operation.name());
+			}
+		}
+
+		private HttpRequest get(String path) {
+			return HttpRequest.newBuilder(uri(path)).header("Accept", "application/json").GET().build();
+		}
+
+		private HttpRequest send(String method, String path, User user) {
+			String json = "{\"forename\":\"" + user.getForename() + "\",\"surname\":\"" + user.getSurname()
+					+ "\",\"age\":" + user.getAge() + "}";
+			return HttpRequest.newBuilder(uri(path))
+					.header("Content-Type", "application/json")
+					.header("Accept", "application/json")
+					.method(method, HttpRequest.BodyPublishers.ofString(json))
+					.build();
+		}
+
+		private URI uri(String path) {
+			return URI.create("http://localhost:" + port + path);
+		}
+	}
+}
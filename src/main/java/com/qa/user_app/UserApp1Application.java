@@ -2,8 +2,11 @@ package com.qa.user_app;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 
-@SpringBootApplication
+// R2DBC's auto-configuration is left out, Boot drops the JDBC DataSource (and so JPA) once there is
+// an R2DBC ConnectionFactory bean, see ReactiveDataSourceConfiguration
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 public class UserApp1Application {
 
 	public static void main(String[] args) {
@@ -1,14 +1,181 @@
 package com.qa.user_app.configuration;
 
-import org.modelmapper.ModelMapper;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.function.RouterFunction;
+import org.springframework.web.servlet.function.ServerResponse;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.qa.user_app.controller.AdaptiveConcurrencyLimiter;
+import com.qa.user_app.controller.StreamingTimeoutInterceptor;
+import com.qa.user_app.controller.UserAdmissionFilter;
+import com.qa.user_app.controller.UserReactiveHandler;
+import com.qa.user_app.controller.UserResponseCacheFilter;
+import com.qa.user_app.service.AsyncUserService;
+import com.qa.user_app.service.UserResponseCache;
+import com.qa.user_app.service.UserService;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 
 @Configuration
+@EnableCaching // enables @Cacheable, @CachePut and @CacheEvict
 public class ApplicationConfiguration {
 
+	// Caffeine backed caches, bounded by the user.cache.spec property (size, TTL and stats)
+	// - wrapped so puts and evictions made inside a transaction only happen once it commits,
+	//   a rolled back update never reaches the cache
+	@Bean
+	public CacheManager cacheManager(@Value("${user.cache.spec}") String spec) {
+		CaffeineCacheManager cacheManager = new CaffeineCacheManager(UserService.USER_CACHE);
+		cacheManager.setCacheSpecification(spec);
+		return new TransactionAwareCacheManagerProxy(cacheManager);
+	}
+
+	// Serves repeated user reads from their encoded bytes, see UserResponseCacheFilter
+	// - registered here rather than as a @Component so @WebMvcTest slices don't pick it up
+	// - runs before the admission filter, a cached read doesn't need a permit
+	// - gzips the same types as the server's own compression
+	@Bean
+	public FilterRegistrationBean<UserResponseCacheFilter> userResponseCacheFilter(UserResponseCache cache,
+			@Value("${user.response-cache.gzip:true}") boolean gzip, ServerProperties serverProperties) {
+		FilterRegistrationBean<UserResponseCacheFilter> registration = new FilterRegistrationBean<>(
+				new UserResponseCacheFilter(cache, gzip, serverProperties.getCompression().getMimeTypes()));
+		registration.addUrlPatterns("/user", "/user/*");
+		registration.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+		return registration;
+	}
+
+	// Sheds load with a 503 once too many reads or writes are in flight, see UserAdmissionFilter
+	// - each limit starts at initial-limit and adapts between min-limit and max-limit, backing off
+	//   whenever a request takes longer than target-latency
+	@Bean
+	public FilterRegistrationBean<UserAdmissionFilter> userAdmissionFilter(
+			@Value("${user.limiter.enabled:true}") boolean enabled,
+			@Value("${user.limiter.backoff-ratio:0.9}") double backoffRatio,
+			@Value("${user.limiter.read.initial-limit:50}") int readInitialLimit,
+			@Value("${user.limiter.read.min-limit:4}") int readMinLimit,
+			@Value("${user.limiter.read.max-limit:180}") int readMaxLimit,
+			@Value("${user.limiter.read.target-latency:250ms}") Duration readTargetLatency,
+			@Value("${user.limiter.write.initial-limit:20}") int writeInitialLimit,
+			@Value("${user.limiter.write.min-limit:2}") int writeMinLimit,
+			@Value("${user.limiter.write.max-limit:100}") int writeMaxLimit,
+			@Value("${user.limiter.write.target-latency:500ms}") Duration writeTargetLatency,
+			ObjectProvider<MeterRegistry> meterRegistry) {
+		AdaptiveConcurrencyLimiter reads = new AdaptiveConcurrencyLimiter("read", readInitialLimit, readMinLimit,
+				readMaxLimit, readTargetLatency, backoffRatio);
+		AdaptiveConcurrencyLimiter writes = new AdaptiveConcurrencyLimiter("write", writeInitialLimit, writeMinLimit,
+				writeMaxLimit, writeTargetLatency, backoffRatio);
+		meterRegistry.ifAvailable(registry -> {
+			reads.bindTo(registry);
+			writes.bindTo(registry);
+		});
+		FilterRegistrationBean<UserAdmissionFilter> registration = new FilterRegistrationBean<>(
+				new UserAdmissionFilter(reads, writes));
+		registration.addUrlPatterns("/user", "/user/*");
+		registration.setOrder(Ordered.LOWEST_PRECEDENCE);
+		registration.setEnabled(enabled);
+		return registration;
+	}
+
+	// Runs the database work of /async/user requests, see AsyncUserService
+	// - threads defaults to the connection pool's size, more threads would only wait for a
+	//   connection, and at most queue-capacity calls wait for a thread, past that the request is
+	//   turned away with a 503
+	// - with virtual-threads (Java 21 or later) every call gets its own virtual thread instead, the
+	//   connection pool's own wait (connection-timeout) is then what bounds them
+	// - executor.* metrics are tagged name=userDatabase
+	// - shut down (after the calls already queued) with the context
+	@Bean(name = AsyncUserService.EXECUTOR)
+	public Executor userDatabaseExecutor(
+			@Value("${user.async.threads:${spring.datasource.hikari.maximum-pool-size:10}}") int threads,
+			@Value("${user.async.queue-capacity:1000}") int queueCapacity,
+			@Value("${user.async.virtual-threads:false}") boolean virtualThreads,
+			ObjectProvider<MeterRegistry> meterRegistry) {
+		ExecutorService executor;
+		if (virtualThreads) {
+			executor = newVirtualThreadPerTaskExecutor();
+		} else {
+			// a full queue throws RejectedExecutionException (the default AbortPolicy)
+			executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("user-db-"));
+		}
+		meterRegistry.ifAvailable(registry -> ExecutorServiceMetrics.monitor(registry, executor, "userDatabase"));
+		return executor;
+	}
+
+	// Streamed responses outlast spring.mvc.async.request-timeout, see StreamingTimeoutInterceptor
+	@Bean
+	public WebMvcConfigurer streamingTimeoutConfigurer(@Value("${user.streaming.timeout:1h}") Duration timeout) {
+		StreamingTimeoutInterceptor interceptor = new StreamingTimeoutInterceptor(timeout);
+		return new WebMvcConfigurer() {
+			@Override
+			public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+				configurer.registerCallableInterceptors(interceptor);
+				configurer.registerDeferredResultInterceptors(interceptor);
+			}
+		};
+	}
+
+	// looked up rather than called, the code is built for Java 11
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("user.async.virtual-threads needs Java 21 or later", e);
+		}
+	}
+
+	// /reactive/user, see UserReactiveHandler
+	@Bean
+	public RouterFunction<ServerResponse> userReactiveRoutes(UserReactiveHandler handler) {
+		return handler.routes();
+	}
+
+	// Users as Smile (Accept: application/x-jackson-smile) and CBOR (Accept: application/cbor), for
+	// services that read many users, they are smaller than JSON and quicker to write and read
+	// - built from Boot's Jackson builder, so they follow the same spring.jackson.* settings as JSON,
+	//   JSON stays the default for clients that don't ask for either
+	// - request bodies can be sent in either format too
+	@Bean
+	public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+		return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+	}
+
+	@Bean
+	public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+		return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+	}
+
+	// times the methods annotated with @Timed, which are UserService's public methods
+	// - each timer is tagged with the class and method, e.g. user.service{method="getById"}
 	@Bean
-	public ModelMapper modelMapper() {
-		return new ModelMapper();
+	public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+		return new TimedAspect(meterRegistry);
 	}
 }
\ No newline at end of file
@@ -8,24 +8,25 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 
 import com.qa.user_app.data.entity.User;
-import com.qa.user_app.data.repository.UserRepository;
+import com.qa.user_app.service.UserService;
 
 @Profile("dev")
 @Configuration
 public class ApplicationStartupListener implements ApplicationListener<ApplicationReadyEvent> {
 
-	private UserRepository userRepository;
+	// saved through the service so the users reach the name index like any other new user
+	private UserService userService;
 	
 	@Autowired // dependency injection
-	public ApplicationStartupListener(UserRepository userRepository) {
-		this.userRepository = userRepository;
+	public ApplicationStartupListener(UserService userService) {
+		this.userService = userService;
 	}
 	
 	// The application has booted and its components are ready to server
 	// content when this method fires
 	@Override
 	public void onApplicationEvent(ApplicationReadyEvent event) {
-		userRepository.saveAll(List.of(
+		userService.createAll(List.of(
 				new User("Fred", "Daly", 32),
 				new User("Sarah", "Daly", 36),
 				new User("Bob", "Sir", 27)
@@ -0,0 +1,86 @@
+package com.qa.user_app.configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.qa.user_app.data.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Read/write splitting, only when a profile configures at least one replica
+// (user.datasource.replicas[0].url), otherwise spring.datasource is used on its own as before
+// - spring.datasource is the primary, every write and every read outside a read only
+//   transaction goes to it
+// - @Transactional(readOnly = true) reads go to a replica, see ReplicaRoutingDataSource
+@Configuration
+@ConditionalOnProperty("user.datasource.replicas[0].url")
+@EnableConfigurationProperties(ReplicaDataSourceProperties.class)
+public class DataSourceRoutingConfiguration {
+
+	private DataSourceProperties primaryProperties;
+
+	private ReplicaDataSourceProperties replicaProperties;
+
+	// the pools aren't beans, so they report their own hikaricp.* metrics tagged with the pool name
+	private ObjectProvider<MeterRegistry> meterRegistry;
+
+	@Autowired
+	public DataSourceRoutingConfiguration(DataSourceProperties primaryProperties,
+			ReplicaDataSourceProperties replicaProperties, ObjectProvider<MeterRegistry> meterRegistry) {
+		this.primaryProperties = primaryProperties;
+		this.replicaProperties = replicaProperties;
+		this.meterRegistry = meterRegistry;
+	}
+
+	// the connection is only chosen when a statement is first run, by which point the
+	// transaction's read only flag has been set
+	@Bean
+	@Primary
+	public DataSource dataSource() {
+		return new LazyConnectionDataSourceProxy(replicaRoutingDataSource());
+	}
+
+	// not a candidate for injection, everything should use the lazy proxy above (marked primary
+	// too, as some auto-configuration looks for a single DataSource regardless)
+	@Bean(autowireCandidate = false)
+	public ReplicaRoutingDataSource replicaRoutingDataSource() {
+		HikariDataSource primary = primaryProperties.initializeDataSourceBuilder()
+				.type(HikariDataSource.class)
+				.build();
+		primary.setPoolName("primary");
+		meterRegistry.ifAvailable(primary::setMetricRegistry);
+		List<DataSource> replicas = new ArrayList<>();
+		for (ReplicaDataSourceProperties.Replica properties : replicaProperties.getReplicas()) {
+			HikariDataSource replica = DataSourceBuilder.create()
+					.type(HikariDataSource.class)
+					.url(properties.getUrl())
+					.username(properties.getUsername())
+					.password(properties.getPassword())
+					.build();
+			replica.setPoolName("replica-" + replicas.size());
+			replica.setConnectionTimeout(replicaProperties.getReplicaConnectionTimeout().toMillis());
+			replica.setReadOnly(true);
+			// don't fail startup when a replica is down, it is skipped until it can be reached
+			replica.setInitializationFailTimeout(-1);
+			meterRegistry.ifAvailable(replica::setMetricRegistry);
+			replicas.add(replica);
+		}
+		return new ReplicaRoutingDataSource(primary, replicas, replicaProperties.getReplicaLagQuery(),
+				replicaProperties.getReplicaLagColumn(), replicaProperties.getReplicaMaxLag(),
+				replicaProperties.getReplicaCheckInterval());
+	}
+}
@@ -0,0 +1,66 @@
+package com.qa.user_app.configuration;
+
+import java.time.Duration;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.DialectResolver;
+import org.springframework.data.r2dbc.dialect.R2dbcDialect;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import com.qa.user_app.data.repository.UserReactiveRepository;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+
+// R2DBC alongside JPA, for the non-blocking reads of /reactive/user (see UserReactiveRepository)
+// - user.reactive.url should reach the same database as spring.datasource, through its own pool
+//   of up to user.reactive.pool.max-size connections, opened on first use
+// - the pool isn't a bean: Boot drops the JDBC DataSource once there is an R2DBC ConnectionFactory
+//   bean, and would add a ReactiveTransactionManager next to JPA's and run schema.sql through
+//   R2DBC, so R2DBC's auto-configuration is left out (see UserApp1Application) and the repository
+//   is built here instead
+@Configuration
+public class ReactiveDataSourceConfiguration {
+
+	private ConnectionPool connectionPool;
+
+	public ReactiveDataSourceConfiguration(@Value("${user.reactive.url}") String url,
+			@Value("${user.reactive.username:}") String username,
+			@Value("${user.reactive.password:}") String password,
+			@Value("${user.reactive.pool.max-size:10}") int maxSize,
+			@Value("${user.reactive.pool.max-idle-time:30m}") Duration maxIdleTime) {
+		ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+				.option(ConnectionFactoryOptions.USER, username)
+				.option(ConnectionFactoryOptions.PASSWORD, password)
+				.build();
+		this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+				.name("reactive")
+				.maxSize(maxSize)
+				.maxIdleTime(maxIdleTime)
+				.build());
+	}
+
+	@Bean
+	public UserReactiveRepository userReactiveRepository() {
+		R2dbcDialect dialect = DialectResolver.getDialect(connectionPool);
+		DatabaseClient databaseClient = DatabaseClient.builder()
+				.connectionFactory(connectionPool)
+				.bindMarkers(dialect.getBindMarkersFactory())
+				.build();
+		return new R2dbcRepositoryFactory(new R2dbcEntityTemplate(databaseClient, dialect))
+				.getRepository(UserReactiveRepository.class);
+	}
+
+	@PreDestroy
+	public void close() {
+		connectionPool.dispose();
+	}
+}
@@ -0,0 +1,109 @@
+package com.qa.user_app.configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// user.datasource.* properties, the read replicas used alongside spring.datasource (the primary)
+@ConfigurationProperties("user.datasource")
+public class ReplicaDataSourceProperties {
+
+	private List<Replica> replicas = new ArrayList<>();
+
+	// a replica further behind the primary than this is skipped
+	private Duration replicaMaxLag = Duration.ofSeconds(5);
+
+	private Duration replicaCheckInterval = Duration.ofSeconds(5);
+
+	// how long a read waits for a replica connection before falling back to the primary
+	private Duration replicaConnectionTimeout = Duration.ofSeconds(1);
+
+	// returns the replica's lag in seconds, blank to only check the replica can be reached
+	private String replicaLagQuery;
+
+	// the column of replicaLagQuery holding the lag, blank for the first column
+	private String replicaLagColumn;
+
+	public List<Replica> getReplicas() {
+		return replicas;
+	}
+
+	public void setReplicas(List<Replica> replicas) {
+		this.replicas = replicas;
+	}
+
+	public Duration getReplicaMaxLag() {
+		return replicaMaxLag;
+	}
+
+	public void setReplicaMaxLag(Duration replicaMaxLag) {
+		this.replicaMaxLag = replicaMaxLag;
+	}
+
+	public Duration getReplicaCheckInterval() {
+		return replicaCheckInterval;
+	}
+
+	public void setReplicaCheckInterval(Duration replicaCheckInterval) {
+		this.replicaCheckInterval = replicaCheckInterval;
+	}
+
+	public Duration getReplicaConnectionTimeout() {
+		return replicaConnectionTimeout;
+	}
+
+	public void setReplicaConnectionTimeout(Duration replicaConnectionTimeout) {
+		this.replicaConnectionTimeout = replicaConnectionTimeout;
+	}
+
+	public String getReplicaLagQuery() {
+		return replicaLagQuery;
+	}
+
+	public void setReplicaLagQuery(String replicaLagQuery) {
+		this.replicaLagQuery = replicaLagQuery;
+	}
+
+	public String getReplicaLagColumn() {
+		return replicaLagColumn;
+	}
+
+	public void setReplicaLagColumn(String replicaLagColumn) {
+		this.replicaLagColumn = replicaLagColumn;
+	}
+
+	public static class Replica {
+
+		private String url;
+
+		private String username;
+
+		private String password;
+
+		public String getUrl() {
+			return url;
+		}
+
+		public void setUrl(String url) {
+			this.url = url;
+		}
+
+		public String getUsername() {
+			return username;
+		}
+
+		public void setUsername(String username) {
+			this.username = username;
+		}
+
+		public String getPassword() {
+			return password;
+		}
+
+		public void setPassword(String password) {
+			this.password = password;
+		}
+	}
+}
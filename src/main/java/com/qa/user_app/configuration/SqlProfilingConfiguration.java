@@ -0,0 +1,77 @@
+package com.qa.user_app.configuration;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.qa.user_app.controller.ResettableSqlStatisticsEndpoint;
+import com.qa.user_app.controller.SqlStatisticsEndpoint;
+import com.qa.user_app.data.datasource.SqlProfilingListener;
+import com.qa.user_app.data.datasource.SqlStatistics;
+
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+
+// Per statement SQL timings and a slow query log, unless user.sql-profiler.enabled is false
+// - the dataSource bean (Boot's pool, or the read/write splitting proxy) is wrapped in a
+//   datasource-proxy ProxyDataSource, so every statement from JPA or JDBC is timed, on the
+//   primary and the replicas alike
+// - the wrapper unwraps to the pool, so the pool's metrics and health are unaffected
+// - any other QueryExecutionListener bean is added to the proxy too (tests use one to count
+//   the statements a request runs)
+@Configuration
+@ConditionalOnProperty(name = "user.sql-profiler.enabled", matchIfMissing = true)
+public class SqlProfilingConfiguration {
+
+	private static final String DATA_SOURCE = "dataSource";
+
+	@Bean
+	public SqlStatistics sqlStatistics(@Value("${user.sql-profiler.max-statements:1000}") int maxStatements) {
+		return new SqlStatistics(maxStatements);
+	}
+
+	@Bean
+	public SqlProfilingListener sqlProfilingListener(SqlStatistics sqlStatistics,
+			@Value("${user.sql-profiler.slow-threshold:100ms}") Duration slowThreshold) {
+		return new SqlProfilingListener(sqlStatistics, slowThreshold);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "user.sql-profiler.reset-enabled", havingValue = "false", matchIfMissing = true)
+	public SqlStatisticsEndpoint sqlStatisticsEndpoint(SqlStatistics sqlStatistics) {
+		return new SqlStatisticsEndpoint(sqlStatistics);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "user.sql-profiler.reset-enabled")
+	public ResettableSqlStatisticsEndpoint resettableSqlStatisticsEndpoint(SqlStatistics sqlStatistics) {
+		return new ResettableSqlStatisticsEndpoint(sqlStatistics);
+	}
+
+	// static, as post processors are created before any other bean, the listeners are only looked
+	// up once the data source is created
+	@Bean
+	public static BeanPostProcessor sqlProfilingDataSourcePostProcessor(
+			ObjectProvider<QueryExecutionListener> listeners) {
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (!DATA_SOURCE.equals(beanName) || !(bean instanceof DataSource) || bean instanceof ProxyDataSource) {
+					return bean;
+				}
+				ProxyDataSourceBuilder builder = ProxyDataSourceBuilder.create(beanName, (DataSource) bean);
+				listeners.orderedStream().forEach(builder::listener);
+				return builder.build();
+			}
+		};
+	}
+}
@@ -0,0 +1,47 @@
+package com.qa.user_app.configuration;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfoHandlerMapping;
+
+import springfox.documentation.spring.web.plugins.WebMvcRequestHandlerProvider;
+
+@Configuration
+public class SwaggerConfiguration {
+
+	// springfox 3 cannot read handler mappings that use Spring Boot 2.6's PathPatternParser,
+	// which the actuator endpoints do, and fails on startup
+	// - this hides those mappings from springfox so only our controllers are documented
+	@Bean
+	public static BeanPostProcessor springfoxHandlerProviderBeanPostProcessor() {
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+				if (bean instanceof WebMvcRequestHandlerProvider) {
+					List<RequestMappingInfoHandlerMapping> mappings = getHandlerMappings(bean);
+					List<RequestMappingInfoHandlerMapping> antPathMappings = mappings.stream()
+							.filter(mapping -> mapping.getPatternParser() == null)
+							.collect(Collectors.toList());
+					mappings.clear();
+					mappings.addAll(antPathMappings);
+				}
+				return bean;
+			}
+
+			@SuppressWarnings("unchecked")
+			private List<RequestMappingInfoHandlerMapping> getHandlerMappings(Object bean) {
+				Field field = ReflectionUtils.findField(bean.getClass(), "handlerMappings");
+				ReflectionUtils.makeAccessible(field);
+				return (List<RequestMappingInfoHandlerMapping>) ReflectionUtils.getField(field, bean);
+			}
+		};
+	}
+}
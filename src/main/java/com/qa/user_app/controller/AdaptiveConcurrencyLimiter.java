@@ -0,0 +1,113 @@
+package com.qa.user_app.controller;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// How many requests of one kind may be handled at once, adjusted by how long they take (AIMD)
+// - a request that takes longer than targetLatency, or fails with a 5xx, cuts the limit by
+//   backoffRatio, requests that started before the last cut don't cut it again, they were
+//   admitted under the old limit
+// - a request within targetLatency while at least half the limit is in use raises the limit by
+//   1/limit, so about 1 for every limit requests, an idle service doesn't grow its limit
+// - the limit stays between minLimit and maxLimit
+// - once the limit is reached tryAcquire fails straight away, the caller sheds the request
+public class AdaptiveConcurrencyLimiter implements MeterBinder {
+
+	private final String name;
+
+	private final int minLimit;
+
+	private final int maxLimit;
+
+	private final long targetLatencyNanos;
+
+	private final double backoffRatio;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final LongAdder rejected = new LongAdder();
+
+	// only changed under the lock, read without it
+	private volatile double limit;
+
+	// when the limit was last cut, requests that started before this don't cut it again
+	private long lastCutNanos;
+
+	public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+			Duration targetLatency, double backoffRatio) {
+		this.name = name;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.targetLatencyNanos = targetLatency.toNanos();
+		this.backoffRatio = backoffRatio;
+		this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+		this.lastCutNanos = System.nanoTime();
+	}
+
+	// Admits a request if fewer than the limit are in flight, it must then be released
+	public boolean tryAcquire() {
+		int current;
+		do {
+			current = inFlight.get();
+			if (current >= (int) limit) {
+				rejected.increment();
+				return false;
+			}
+		} while (!inFlight.compareAndSet(current, current + 1));
+		return true;
+	}
+
+	// Releases a request admitted by tryAcquire, started and finished are System.nanoTime()s
+	public void release(long startedNanos, long finishedNanos, boolean failed) {
+		int wasInFlight = inFlight.getAndDecrement();
+		synchronized (this) {
+			if (failed || finishedNanos - startedNanos > targetLatencyNanos) {
+				if (startedNanos - lastCutNanos > 0) {
+					limit = Math.max(minLimit, limit * backoffRatio);
+					lastCutNanos = finishedNanos;
+				}
+			} else if (wasInFlight * 2 >= limit) {
+				limit = Math.min(maxLimit, limit + 1 / limit);
+			}
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	// user.limiter.limit, user.limiter.in-flight and user.limiter.rejected, tagged with the name
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("user.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+				.tag("type", name)
+				.description("Requests that may be handled at once")
+				.register(registry);
+		Gauge.builder("user.limiter.in-flight", this, AdaptiveConcurrencyLimiter::getInFlight)
+				.tag("type", name)
+				.description("Requests being handled")
+				.register(registry);
+		FunctionCounter.builder("user.limiter.rejected", this, AdaptiveConcurrencyLimiter::getRejected)
+				.tag("type", name)
+				.description("Requests turned away with a 503 because the limit was reached")
+				.register(registry);
+	}
+}
@@ -0,0 +1,129 @@
+package com.qa.user_app.controller;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.validation.Valid;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.qa.user_app.controller.request_object.UserRequest;
+import com.qa.user_app.service.AsyncUserService;
+import com.qa.user_app.service.UserService;
+import com.qa.user_app.service.dto.UserDTO;
+import com.qa.user_app.service.dto.UserWriteStatus;
+
+// The reads and writes of UserController, handled asynchronously
+// localhost:8080/async/user
+// - each method returns as soon as the work is handed to AsyncUserService, the container thread
+//   is freed and Spring writes the response once the future completes, so many more requests
+//   can be open at once than there are container threads
+// - the requests, responses and errors are the same as those of /user, except that a full
+//   executor queue answers 503 with Retry-After rather than waiting
+// - the response cache and admission filters are only mapped to /user, the executor's bounded
+//   queue is the admission control here
+@RestController
+@RequestMapping(path = "/async/user")
+public class AsyncUserController {
+
+	private AsyncUserService asyncUserService;
+
+	// only for the write-behind check and enqueue, neither touches the database
+	private UserService userService;
+
+	private UserMapper userMapper;
+
+	@Autowired
+	public AsyncUserController(AsyncUserService asyncUserService, UserService userService, UserMapper userMapper) {
+		this.asyncUserService = asyncUserService;
+		this.userService = userService;
+		this.userMapper = userMapper;
+	}
+
+	// READ ALL (a page at a time), as GET /user
+	@GetMapping
+	public CompletableFuture<ResponseEntity<List<UserDTO>>> getUsers(
+			@RequestParam(name = "after", required = false) Integer after,
+			@RequestParam(name = "limit", defaultValue = "" + UserService.DEFAULT_PAGE_SIZE) int limit,
+			@RequestParam(name = "sort", defaultValue = "id") String sort) {
+		return asyncUserService.getPage(after, limit, UserController.parseSort(sort))
+				.thenApply(page -> UserController.pageResponse(page, userMapper.toDTOs(page.getUsers())));
+	}
+
+	// SEARCH (a page at a time), as GET /user/search
+	@GetMapping("/search")
+	public CompletableFuture<ResponseEntity<List<UserDTO>>> searchUsers(
+			@RequestParam(name = "surname", required = false) String surname,
+			@RequestParam(name = "forename", required = false) String forename,
+			@RequestParam(name = "minAge", required = false) Integer minAge,
+			@RequestParam(name = "maxAge", required = false) Integer maxAge,
+			@RequestParam(name = "after", required = false) Integer after,
+			@RequestParam(name = "limit", defaultValue = "" + UserService.DEFAULT_PAGE_SIZE) int limit) {
+		return asyncUserService.search(UserController.emptyToNull(surname), UserController.emptyToNull(forename),
+				minAge, maxAge, after, limit)
+				.thenApply(page -> UserController.pageResponse(page, userMapper.toDTOs(page.getUsers())));
+	}
+
+	// READ BY ID, as GET /user/{id}
+	@GetMapping("/{id}")
+	public CompletableFuture<ResponseEntity<UserDTO>> getUserById(@PathVariable("id") int id) {
+		return asyncUserService.getById(id).thenApply(savedUser -> {
+			HttpHeaders headers = new HttpHeaders();
+			headers.setETag(UserETags.of(savedUser));
+			return new ResponseEntity<UserDTO>(userMapper.toDTO(savedUser), headers, HttpStatus.OK);
+		});
+	}
+
+	// CREATE, as POST /user
+	// - in write-behind mode the user is only queued, which doesn't need the executor
+	@PostMapping
+	public CompletableFuture<ResponseEntity<?>> createUser(@Valid @RequestBody UserRequest user) {
+		if (userService.isWriteBehind()) {
+			String trackingId = userService.enqueue(userMapper.toUser(user));
+			HttpHeaders header = new HttpHeaders();
+			header.add("Location", "/user/pending/" + trackingId);
+			return CompletableFuture.completedFuture(new ResponseEntity<UserWriteStatus>(
+					UserWriteStatus.pending(trackingId), header, HttpStatus.ACCEPTED));
+		}
+		return asyncUserService.create(userMapper.toUser(user)).thenApply(savedUser -> {
+			HttpHeaders header = new HttpHeaders();
+			header.add("Location", "/user/" + savedUser.getId());
+			header.setETag(UserETags.of(savedUser));
+			return new ResponseEntity<UserDTO>(userMapper.toDTO(savedUser), header, HttpStatus.CREATED);
+		});
+	}
+
+	// UPDATE, as PUT /user/{id}
+	@PutMapping("/{id}")
+	public CompletableFuture<ResponseEntity<UserDTO>> updateUser(@PathVariable("id") int id,
+			@Valid @RequestBody UserRequest user,
+			@RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		return asyncUserService.update(id, userMapper.toUser(user), UserController.parseIfMatch(id, ifMatch))
+				.thenApply(savedUser -> {
+					HttpHeaders headers = new HttpHeaders();
+					headers.setETag(UserETags.of(savedUser));
+					return new ResponseEntity<UserDTO>(userMapper.toDTO(savedUser), headers, HttpStatus.ACCEPTED);
+				});
+	}
+
+	// DELETE, as DELETE /user/{id}
+	@DeleteMapping("/{id}")
+	public CompletableFuture<ResponseEntity<?>> deleteUser(@PathVariable("id") int id,
+			@RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		return asyncUserService.delete(id, UserController.parseIfMatch(id, ifMatch))
+				.thenApply(deleted -> ResponseEntity.accepted().build());
+	}
+}
@@ -0,0 +1,23 @@
+package com.qa.user_app.controller;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+
+import com.qa.user_app.data.datasource.SqlStatistics;
+
+// /actuator/sql with a DELETE that starts counting again, e.g. before a load test
+// - only used where user.sql-profiler.reset-enabled is set, elsewhere anyone who can read the
+//   statistics could also wipe them
+public class ResettableSqlStatisticsEndpoint extends SqlStatisticsEndpoint {
+
+	private SqlStatistics statistics;
+
+	public ResettableSqlStatisticsEndpoint(SqlStatistics statistics) {
+		super(statistics);
+		this.statistics = statistics;
+	}
+
+	@DeleteOperation
+	public void reset() {
+		statistics.reset();
+	}
+}
@@ -0,0 +1,27 @@
+package com.qa.user_app.controller;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import com.qa.user_app.data.datasource.SqlStatistics;
+
+// The time spent in each SQL statement, at /actuator/sql
+// - GET lists every statement, the one that has taken the most time in total first
+// - read only, ResettableSqlStatisticsEndpoint adds the DELETE where user.sql-profiler.reset-enabled
+//   is set (the dev profile)
+@Endpoint(id = "sql")
+public class SqlStatisticsEndpoint {
+
+	private SqlStatistics statistics;
+
+	public SqlStatisticsEndpoint(SqlStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	@ReadOperation
+	public List<SqlStatistics.Entry> statements() {
+		return statistics.getStatements();
+	}
+}
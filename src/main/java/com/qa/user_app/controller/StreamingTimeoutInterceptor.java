@@ -0,0 +1,56 @@
+package com.qa.user_app.controller;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+
+// Gives streamed responses (GET /user/export, POST /user/import, GET /reactive/user/export) a
+// timeout of their own, user.streaming.timeout
+// - spring.mvc.async.request-timeout covers every other async request, /async/user's included,
+//   so it is kept short, and a StreamingResponseBody or a streamed Publisher has no timeout of
+//   its own to set instead
+// - the handler calls streaming() before returning, the timeout is changed just before the
+//   async processing starts
+public class StreamingTimeoutInterceptor implements CallableProcessingInterceptor, DeferredResultProcessingInterceptor {
+
+	private static final String STREAMING_ATTRIBUTE = StreamingTimeoutInterceptor.class.getName() + ".streaming";
+
+	private long timeoutMillis;
+
+	public StreamingTimeoutInterceptor(Duration timeout) {
+		this.timeoutMillis = timeout.toMillis();
+	}
+
+	// Marks the current request as streamed, does nothing outside a request (a handler called
+	// directly)
+	public static void streaming() {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes != null) {
+			attributes.setAttribute(STREAMING_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+		}
+	}
+
+	@Override
+	public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+		setTimeout(request);
+	}
+
+	@Override
+	public <T> void beforeConcurrentHandling(NativeWebRequest request, DeferredResult<T> deferredResult) {
+		setTimeout(request);
+	}
+
+	private void setTimeout(NativeWebRequest request) {
+		if (request instanceof AsyncWebRequest
+				&& request.getAttribute(STREAMING_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+			((AsyncWebRequest) request).setTimeout(timeoutMillis);
+		}
+	}
+}
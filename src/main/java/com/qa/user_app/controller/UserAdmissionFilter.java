@@ -0,0 +1,66 @@
+package com.qa.user_app.controller;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+// Sheds requests to /user with a fast 503 once too many are already being handled, so when the
+// database slows down requests are turned away rather than all queueing up and timing out
+// together (see AdaptiveConcurrencyLimiter for how each limit adapts)
+// - reads (GET and HEAD) and writes have their own limit, slow writes don't shed reads
+// - a rejected request gets a Retry-After, it never reaches the controller or the database
+// - GET /user/export and POST /user/import are long running by design and aren't limited
+// - registered after UserResponseCacheFilter, a read answered from the cache needs no permit
+public class UserAdmissionFilter extends OncePerRequestFilter {
+
+	private static final byte[] REJECTED_BODY = "Too many requests are being handled, try again later"
+			.getBytes(StandardCharsets.UTF_8);
+
+	private AdaptiveConcurrencyLimiter reads;
+
+	private AdaptiveConcurrencyLimiter writes;
+
+	public UserAdmissionFilter(AdaptiveConcurrencyLimiter reads, AdaptiveConcurrencyLimiter writes) {
+		this.reads = reads;
+		this.writes = writes;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		return !(path.equals("/user") || path.startsWith("/user/")) || path.equals("/user/export")
+				|| path.equals("/user/import");
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		String method = request.getMethod();
+		AdaptiveConcurrencyLimiter limiter = "GET".equals(method) || "HEAD".equals(method) ? reads : writes;
+		if (!limiter.tryAcquire()) {
+			response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+			response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+			response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+			response.setContentLength(REJECTED_BODY.length);
+			response.getOutputStream().write(REJECTED_BODY);
+			return;
+		}
+		long started = System.nanoTime();
+		boolean failed = true;
+		try {
+			chain.doFilter(request, response);
+			failed = response.getStatus() >= 500;
+		} finally {
+			limiter.release(started, System.nanoTime(), failed);
+		}
+	}
+}
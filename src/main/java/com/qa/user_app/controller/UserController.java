@@ -1,86 +1,360 @@
 package com.qa.user_app.controller;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import com.qa.user_app.controller.request_object.UserRequest;
 import com.qa.user_app.data.entity.User;
+import com.qa.user_app.execptions.UserModifiedException;
+import com.qa.user_app.service.UserField;
+import com.qa.user_app.service.UserNameIndex;
 import com.qa.user_app.service.UserService;
+import com.qa.user_app.service.UserSort;
+import com.qa.user_app.service.dto.UserDTO;
+import com.qa.user_app.service.dto.UserPage;
+import com.qa.user_app.service.dto.UserWriteStatus;
 
+// users are read and written as JSON, or as Smile or CBOR by the Content-Type and Accept headers
+// (see ApplicationConfiguration), large JSON responses are gzipped (server.compression)
 @RestController // this is a bean that should be stored in the app context
 @RequestMapping(path = "/user") // access this controller at localhost:8080/user
+@Validated // validate constraints on method parameters, such as each element of a batch
 public class UserController {
 	
+	// response header carrying the cursor of the next page, absent on the last page
+	public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+	
+	public static final String TEXT_CSV_VALUE = "text/csv";
+	public static final MediaType TEXT_CSV = MediaType.parseMediaType(TEXT_CSV_VALUE);
+	
 	// UserController has-a JpaRepository
 	// - How do we get this repository?
 	// - To get the repository, we use dependency injection
 	private UserService userService;
 	
+	private ObjectMapper objectMapper;
+	
+	// requests come in as UserRequests and go out as UserDTOs, the User entity stays in here
+	private UserMapper userMapper;
+	
+	// checks imported users, which don't go through @Valid
+	private Validator validator;
+	
 	@Autowired // indicates that the repository must be injected via dependency injection
-	public UserController(UserService userService) {
+	public UserController(UserService userService, ObjectMapper objectMapper, UserMapper userMapper,
+			Validator validator) {
 		this.userService = userService;
+		this.objectMapper = objectMapper;
+		this.userMapper = userMapper;
+		this.validator = validator;
 	}
 
-	// READ ALL
+	// READ ALL (a page at a time)
+	// localhost:8080/user?after=3&limit=50&sort=surname
+	// - after is the X-Next-Cursor header of the previous page, omitted for the first page
+	// - sort is one of id (default), surname or age
+	// - the page has an ETag, Spring answers a matching If-None-Match with 304 Not Modified
+	//   and no body
 	@GetMapping // localhost:8080/user
-	public ResponseEntity<List<User>> getUsers() {
-		ResponseEntity<List<User>> users = ResponseEntity.ok(userService.getAll());
+	public ResponseEntity<List<UserDTO>> getUsers(@RequestParam(name = "after", required = false) Integer after,
+			@RequestParam(name = "limit", defaultValue = "" + UserService.DEFAULT_PAGE_SIZE) int limit,
+			@RequestParam(name = "sort", defaultValue = "id") String sort) {
+		UserPage page = userService.getPage(after, limit, parseSort(sort));
+		return pageResponse(page, userMapper.toDTOs(page.getUsers()));
+	}
+
+	// READ ALL, only some fields
+	// localhost:8080/user?fields=id,surname&after=3&limit=50&sort=surname
+	// - fields are any of id, forename, surname and age, only those columns are read from the
+	//   database and each user is a JSON object of just those fields (and its id)
+	@GetMapping(params = { "fields", "!ids" })
+	public ResponseEntity<List<Map<String, Object>>> getUserFields(
+			@RequestParam(name = "after", required = false) Integer after,
+			@RequestParam(name = "limit", defaultValue = "" + UserService.DEFAULT_PAGE_SIZE) int limit,
+			@RequestParam(name = "sort", defaultValue = "id") String sort,
+			@RequestParam("fields") List<String> fields) {
+		Set<UserField> userFields = parseFields(fields);
+		UserPage page = userService.getPage(after, limit, parseSort(sort), userFields);
+		return pageResponse(page, userMapper.toMaps(page.getUsers(), userFields));
+	}
+
+	// SEARCH (a page at a time)
+	// localhost:8080/user/search?surname=Daly&forename=Fr&minAge=30&maxAge=40&after=3&limit=50
+	// - every filter is optional, surname must match exactly, forename is a prefix and the
+	//   ages are inclusive
+	// - results are in id order and paged like GET /user, with the X-Next-Cursor header
+	@GetMapping("/search") // localhost:8080/user/search
+	public ResponseEntity<List<UserDTO>> searchUsers(@RequestParam(name = "surname", required = false) String surname,
+			@RequestParam(name = "forename", required = false) String forename,
+			@RequestParam(name = "minAge", required = false) Integer minAge,
+			@RequestParam(name = "maxAge", required = false) Integer maxAge,
+			@RequestParam(name = "after", required = false) Integer after,
+			@RequestParam(name = "limit", defaultValue = "" + UserService.DEFAULT_PAGE_SIZE) int limit) {
+		UserPage page = userService.search(emptyToNull(surname), emptyToNull(forename), minAge, maxAge, after, limit);
+		return pageResponse(page, userMapper.toDTOs(page.getUsers()));
+	}
+
+	// SEARCH, only some fields
+	// localhost:8080/user/search?surname=Daly&fields=forename
+	// - fields work as they do for GET /user
+	@GetMapping(path = "/search", params = "fields")
+	public ResponseEntity<List<Map<String, Object>>> searchUserFields(
+			@RequestParam(name = "surname", required = false) String surname,
+			@RequestParam(name = "forename", required = false) String forename,
+			@RequestParam(name = "minAge", required = false) Integer minAge,
+			@RequestParam(name = "maxAge", required = false) Integer maxAge,
+			@RequestParam(name = "after", required = false) Integer after,
+			@RequestParam(name = "limit", defaultValue = "" + UserService.DEFAULT_PAGE_SIZE) int limit,
+			@RequestParam("fields") List<String> fields) {
+		Set<UserField> userFields = parseFields(fields);
+		UserPage page = userService.search(emptyToNull(surname), emptyToNull(forename), minAge, maxAge, after, limit,
+				userFields);
+		return pageResponse(page, userMapper.toMaps(page.getUsers(), userFields));
+	}
+
+	// SUGGEST (typeahead)
+	// localhost:8080/user/suggest?q=fre%20da&limit=10
+	// - users with a forename or surname starting with each word of q, in name order, then
+	//   users whose names are a typo or two away from it
+	// - answered from an in memory index when user.name-index.enabled is set (a single instance,
+	//   see UserNameIndex), otherwise from the database, which only matches names by prefix
+	@GetMapping("/suggest") // localhost:8080/user/suggest
+	public ResponseEntity<List<UserDTO>> suggestUsers(@RequestParam("q") String query,
+			@RequestParam(name = "limit", defaultValue = "" + UserNameIndex.DEFAULT_SUGGESTIONS) int limit) {
+		return ResponseEntity.ok(userMapper.toDTOs(userService.suggest(query, limit)));
+	}
+
+	// the page's users as body with its ETag, and a next page cursor unless it is the last page
+	static <T> ResponseEntity<List<T>> pageResponse(UserPage page, List<T> body) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setETag(UserETags.of(page.getUsers(), page.getNextCursor()));
+		if (page.hasNext()) {
+			headers.add(NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+		}
+		ResponseEntity<List<T>> users = new ResponseEntity<List<T>>(body, headers, HttpStatus.OK);
 		return users;
 	}
 
+	// READ MANY BY ID
+	// localhost:8080/user?ids=1,2,3
+	// - lookups are batched together with other requests' into a single IN query
+	// - users that don't exist are left out rather than failing the request
+	@GetMapping(params = "ids")
+	public ResponseEntity<List<UserDTO>> getUsersByIds(
+			@RequestParam("ids") @NotEmpty @Size(max = UserService.MAX_PAGE_SIZE) List<Integer> ids) {
+		List<User> users = userService.getByIds(ids);
+		HttpHeaders headers = new HttpHeaders();
+		headers.setETag(UserETags.of(users, null));
+		return new ResponseEntity<List<UserDTO>>(userMapper.toDTOs(users), headers, HttpStatus.OK);
+	}
+
+	// EXPORT
+	// streams every user as newline delimited JSON (one user per line)
+	// - rows are written as they are read from the database on an async thread, so the
+	//   response starts straight away and memory use does not grow with the table
+	// - may take as long as user.streaming.timeout, see StreamingTimeoutInterceptor
+	@GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> exportUsers() {
+		StreamingTimeoutInterceptor.streaming();
+		// don't flush the socket after every row, the generator's buffer does that for us
+		ObjectWriter writer = objectMapper.writerFor(UserDTO.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		StreamingResponseBody body = outputStream -> {
+			try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+				generator.setRootValueSeparator(null);
+				userService.forEach(user -> {
+					try {
+						writer.writeValue(generator, userMapper.toDTO(user));
+						generator.writeRaw('\n');
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			}
+		};
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+	}
+
 	// READ BY ID
 	// {id} is a path variable
 	// we send requests to: localhost:8080/user/{id}
+	// - the user's version is sent as its ETag, a matching If-None-Match gets 304 Not Modified
 	@RequestMapping(path = "/{id}", method = { RequestMethod.GET })
 	// @GetMapping(path = "/{id}")
-	public ResponseEntity<User> getUserById(@PathVariable("id") int id) {
+	public ResponseEntity<UserDTO> getUserById(@PathVariable("id") int id) {
 		User savedUser = userService.getById(id);
 	
-		ResponseEntity<User> response = ResponseEntity.status(HttpStatus.OK).body(savedUser);
+		HttpHeaders headers = new HttpHeaders();
+		headers.setETag(UserETags.of(savedUser));
+		ResponseEntity<UserDTO> response = new ResponseEntity<UserDTO>(userMapper.toDTO(savedUser), headers, HttpStatus.OK);
 		return response;
 	}
 
 	// CREATE
 	// RequestMapping(method = { RequestMethod.POST })
+	// - in write-behind mode (user.write-behind.enabled) the user is queued rather than inserted,
+	//   202 Accepted points at GET /user/pending/{trackingId}, 429 when the queue is full
 	@PostMapping // accepts requests to: localhost:8080/user using POST
-	public ResponseEntity<User> createUser(@Valid @RequestBody User user) {
-		User savedUser = userService.create(user);
+	public ResponseEntity<?> createUser(@Valid @RequestBody UserRequest user) {
+		if (userService.isWriteBehind()) {
+			String trackingId = userService.enqueue(userMapper.toUser(user));
+			HttpHeaders header = new HttpHeaders();
+			header.add("Location", "/user/pending/" + trackingId);
+			return new ResponseEntity<UserWriteStatus>(UserWriteStatus.pending(trackingId), header,
+					HttpStatus.ACCEPTED);
+		}
+		User savedUser = userService.create(userMapper.toUser(user));
 		HttpHeaders header = new HttpHeaders();
 		header.add("Location", "/user/" + String.valueOf(savedUser.getId()));
+		header.setETag(UserETags.of(savedUser));
 															// (body, httpHeaders, responseStatusCode)
-		ResponseEntity<User> response = new ResponseEntity<User>(savedUser, header, HttpStatus.CREATED);
+		ResponseEntity<UserDTO> response = new ResponseEntity<UserDTO>(userMapper.toDTO(savedUser), header, HttpStatus.CREATED);
 		return response;
 	}
 
+	// the progress of a user queued by POST /user in write-behind mode
+	// - once created, Location points at the user
+	@GetMapping("/pending/{trackingId}") // localhost:8080/user/pending/{trackingId}
+	public ResponseEntity<UserWriteStatus> getWriteStatus(@PathVariable("trackingId") String trackingId) {
+		UserWriteStatus status = userService.getWriteStatus(trackingId);
+		HttpHeaders headers = new HttpHeaders();
+		if (status.getUserId() != null) {
+			headers.add("Location", "/user/" + status.getUserId());
+		}
+		return new ResponseEntity<UserWriteStatus>(status, headers, HttpStatus.OK);
+	}
+
+	// CREATE MANY
+	// accepts a JSON array of users and inserts them in JDBC batches
+	@PostMapping("/batch") // localhost:8080/user/batch
+	public ResponseEntity<List<UserDTO>> createUsers(
+			@RequestBody @NotEmpty @Size(max = UserService.MAX_CREATE_ALL_SIZE) List<@Valid UserRequest> users) {
+		List<User> savedUsers = userService.createAll(userMapper.toUsers(users));
+		return new ResponseEntity<List<UserDTO>>(userMapper.toDTOs(savedUsers), HttpStatus.CREATED);
+	}
+
+	// IMPORT
+	// accepts a large file of users as NDJSON (application/x-ndjson) or CSV (text/csv)
+	// - the body is read and saved as it arrives on an async thread, so neither the request nor
+	//   the response is ever held in memory, see UserImporter
+	// - may take as long as user.streaming.timeout, see StreamingTimeoutInterceptor
+	// - the response is NDJSON, one line for each line of the body that couldn't be imported,
+	//   then a summary line with the number of users imported and failed
+	@PostMapping(path = "/import", consumes = { MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE },
+			produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> importUsers(HttpServletRequest request) {
+		StreamingTimeoutInterceptor.streaming();
+		boolean csv = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(TEXT_CSV);
+		StreamingResponseBody body = outputStream -> {
+			try (Reader reader = new BufferedReader(new InputStreamReader(request.getInputStream(),
+					request.getCharacterEncoding() == null ? StandardCharsets.UTF_8
+							: Charset.forName(request.getCharacterEncoding())));
+					JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+				generator.setRootValueSeparator(null);
+				new UserImporter(userService, validator, userMapper, generator)
+						.importAll(new UserImportReader(reader, csv, objectMapper.readerFor(UserRequest.class)));
+			}
+		};
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+	}
+
 	// UPDATE
 	// update everything, aside from the id
+	// - with an If-Match header the update only happens if the user is still at that ETag,
+	//   otherwise 412 Precondition Failed
 	@PutMapping("/{id}") // localhost:8080/user/1
-	public ResponseEntity<User> updateUser(@PathVariable("id") int id, @Valid @RequestBody User user) {
-		User savedUser = userService.update(id, user);
+	public ResponseEntity<UserDTO> updateUser(@PathVariable("id") int id, @Valid @RequestBody UserRequest user,
+			@RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		User savedUser = userService.update(id, userMapper.toUser(user), parseIfMatch(id, ifMatch));
 		// Response entity = status accepted with body of savedUser
-		ResponseEntity<User> response = ResponseEntity.status(HttpStatus.ACCEPTED).body(savedUser);
+		HttpHeaders headers = new HttpHeaders();
+		headers.setETag(UserETags.of(savedUser));
+		ResponseEntity<UserDTO> response = new ResponseEntity<UserDTO>(userMapper.toDTO(savedUser), headers,
+				HttpStatus.ACCEPTED);
 		return response;
 	}
 
 	// DELETE
+	// - with an If-Match header the user is only deleted if it is still at that ETag
 	@DeleteMapping("/{id}")
-	public ResponseEntity<?> deleteUser(@PathVariable("id") int id) {
-		userService.delete(id);
+	public ResponseEntity<?> deleteUser(@PathVariable("id") int id,
+			@RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		userService.delete(id, parseIfMatch(id, ifMatch));
 		return ResponseEntity.accepted().build();
 	}
 
+	static Integer parseIfMatch(int id, String ifMatch) {
+		try {
+			return UserETags.parseVersion(ifMatch);
+		} catch (NumberFormatException e) {
+			// not an ETag we handed out, so it can't match the current version
+			throw new UserModifiedException("User with id " + id + " does not match " + ifMatch);
+		}
+	}
+
+	// ?surname= is treated as no filter rather than a search for an empty surname
+	static String emptyToNull(String value) {
+		return value == null || value.isEmpty() ? null : value;
+	}
+
+	// id is always included, it is what the next page cursor refers to
+	private static Set<UserField> parseFields(List<String> fields) {
+		Set<UserField> userFields = EnumSet.of(UserField.ID);
+		for (String field : fields) {
+			try {
+				userFields.add(UserField.valueOf(field.trim().toUpperCase()));
+			} catch (IllegalArgumentException e) {
+				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Users have no field " + field);
+			}
+		}
+		return userFields;
+	}
+
+	static UserSort parseSort(String sort) {
+		try {
+			return UserSort.valueOf(sort.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cannot sort users by " + sort);
+		}
+	}
+
 }
@@ -0,0 +1,55 @@
+package com.qa.user_app.controller;
+
+import java.util.List;
+import java.util.Objects;
+
+import com.qa.user_app.data.entity.User;
+
+// Builds and reads the entity tags (ETag headers) of users
+// - a user's ETag is its version, which changes on every update
+// - a page's ETag is a hash of the ids and versions on it, so it changes whenever a user on the
+//   page is created, updated or deleted
+// - they are weak (W/"3"): the same users have the same tag as JSON, Smile or CBOR, gzipped or
+//   not, and Tomcat only compresses a response without a strong ETag
+// - If-Match is still honoured for a weak tag, it is compared by its version (parseVersion)
+public final class UserETags {
+
+	private UserETags() {
+	}
+
+	// null when the version isn't known, in which case no ETag is sent
+	public static String of(User user) {
+		return user.getVersion() == null ? null : quote(String.valueOf(user.getVersion()));
+	}
+
+	public static String of(List<User> users, Integer nextCursor) {
+		long hash = 17;
+		for (User user : users) {
+			hash = 31 * hash + Objects.hashCode(user.getId());
+			hash = 31 * hash + Objects.hashCode(user.getVersion());
+		}
+		hash = 31 * hash + Objects.hashCode(nextCursor);
+		return quote(Long.toHexString(hash));
+	}
+
+	// Reads the version out of an If-Match header
+	// - null when there is no header or it is "*" (any version)
+	// - throws NumberFormatException if it isn't one of our ETags
+	public static Integer parseVersion(String ifMatch) {
+		if (ifMatch == null || ifMatch.trim().equals("*")) {
+			return null;
+		}
+		String tag = ifMatch.trim();
+		if (tag.startsWith("W/")) {
+			tag = tag.substring(2);
+		}
+		if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+			tag = tag.substring(1, tag.length() - 1);
+		}
+		return Integer.valueOf(tag);
+	}
+
+	private static String quote(String tag) {
+		return "W/\"" + tag + "\"";
+	}
+}
@@ -0,0 +1,186 @@
+package com.qa.user_app.controller;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import com.qa.user_app.controller.request_object.UserRequest;
+
+// Reads the body of POST /user/import one line at a time, as NDJSON (one user object per line)
+// or CSV (forename,surname,age, with an optional header row naming the columns in any order)
+// - only the current line is held in memory, a line longer than MAX_LINE_LENGTH is skipped
+//   and reported rather than read
+// - blank lines are skipped, line numbers count every line of the body from 1
+// - CSV fields may be quoted, with "" for a quote inside a quoted field, but can't span lines
+class UserImportReader {
+
+	static final int MAX_LINE_LENGTH = 8192;
+
+	private static final String[] DEFAULT_COLUMNS = { "forename", "surname", "age" };
+
+	// one line of the body, either a user or the reason it couldn't be read
+	static class Line {
+
+		final int number;
+
+		final UserRequest user;
+
+		final String error;
+
+		private Line(int number, UserRequest user, String error) {
+			this.number = number;
+			this.user = user;
+			this.error = error;
+		}
+	}
+
+	private final Reader reader;
+
+	private final boolean csv;
+
+	private final ObjectReader jsonReader;
+
+	private final StringBuilder buffer = new StringBuilder();
+
+	private int lineNumber = 0;
+
+	private boolean overlong;
+
+	// for CSV, the index of each of forename, surname and age in a row
+	private int[] columns;
+
+	UserImportReader(Reader reader, boolean csv, ObjectReader jsonReader) {
+		this.reader = reader;
+		this.csv = csv;
+		this.jsonReader = jsonReader;
+	}
+
+	// the next non-blank line, or null at the end of the body
+	Line next() throws IOException {
+		String text;
+		while ((text = readLine()) != null) {
+			if (overlong) {
+				return new Line(lineNumber, null, "Line is longer than " + MAX_LINE_LENGTH + " characters");
+			}
+			if (text.isBlank()) {
+				continue;
+			}
+			if (!csv) {
+				return parseJson(text);
+			}
+			List<String> fields = splitCsv(text);
+			if (fields == null) {
+				return new Line(lineNumber, null, "Unterminated quoted field");
+			}
+			if (columns == null && isHeader(fields)) {
+				continue;
+			}
+			return parseCsv(fields);
+		}
+		return null;
+	}
+
+	private Line parseJson(String text) {
+		try {
+			return new Line(lineNumber, jsonReader.readValue(text), null);
+		} catch (JsonProcessingException e) {
+			return new Line(lineNumber, null, "Invalid JSON: " + e.getOriginalMessage());
+		}
+	}
+
+	// a first row made up of only column names sets the column order, without one the
+	// columns are forename,surname,age
+	private boolean isHeader(List<String> fields) {
+		int[] found = { -1, -1, -1 };
+		for (int i = 0; i < fields.size(); i++) {
+			String name = fields.get(i).trim().toLowerCase(Locale.ROOT);
+			for (int column = 0; column < DEFAULT_COLUMNS.length; column++) {
+				if (DEFAULT_COLUMNS[column].equals(name)) {
+					found[column] = i;
+				}
+			}
+		}
+		boolean header = found[0] >= 0 && found[1] >= 0 && found[2] >= 0;
+		columns = header ? found : new int[] { 0, 1, 2 };
+		return header;
+	}
+
+	private Line parseCsv(List<String> fields) {
+		String forename = field(fields, columns[0]);
+		String surname = field(fields, columns[1]);
+		String age = field(fields, columns[2]);
+		Integer parsedAge = null;
+		if (age != null && !age.isBlank()) {
+			try {
+				parsedAge = Integer.valueOf(age.trim());
+			} catch (NumberFormatException e) {
+				return new Line(lineNumber, null, "age: not a whole number");
+			}
+		}
+		return new Line(lineNumber, new UserRequest(forename, surname, parsedAge), null);
+	}
+
+	private static String field(List<String> fields, int index) {
+		return index < fields.size() ? fields.get(index) : null;
+	}
+
+	// null if a quoted field isn't closed before the end of the line
+	static List<String> splitCsv(String line) {
+		List<String> fields = new ArrayList<>(3);
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c != '"') {
+					field.append(c);
+				} else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					field.append('"');
+					i++;
+				} else {
+					quoted = false;
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		if (quoted) {
+			return null;
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	// like BufferedReader.readLine (the reader should be buffered), but keeps at most
+	// MAX_LINE_LENGTH characters of a line and sets overlong when there were more
+	private String readLine() throws IOException {
+		buffer.setLength(0);
+		overlong = false;
+		int c = reader.read();
+		if (c == -1) {
+			return null;
+		}
+		lineNumber++;
+		while (c != -1 && c != '\n') {
+			if (c != '\r') {
+				if (buffer.length() < MAX_LINE_LENGTH) {
+					buffer.append((char) c);
+				} else {
+					overlong = true;
+				}
+			}
+			c = reader.read();
+		}
+		return buffer.toString();
+	}
+}
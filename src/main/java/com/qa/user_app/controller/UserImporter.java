@@ -0,0 +1,136 @@
+package com.qa.user_app.controller;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.service.UserService;
+
+// Imports the users read by a UserImportReader, reporting each line that fails as it goes
+// - users are validated against the constraints on User, then saved CHUNK_SIZE at a time,
+//   each chunk in its own transaction of batched inserts (UserService.createAll)
+// - a chunk the database rejects is saved again one user at a time, so only the users that
+//   are at fault fail
+// - only one chunk of users is held at once, so memory doesn't grow with the size of the body
+// - writes one NDJSON line per failed line, {"line":3,"error":"..."}, then a final
+//   {"imported":n,"failed":m} line, flushed after every chunk so the client sees progress
+class UserImporter {
+
+	static final int CHUNK_SIZE = UserService.MAX_CREATE_ALL_SIZE;
+
+	private final UserService userService;
+
+	private final Validator validator;
+
+	private final UserMapper userMapper;
+
+	private final JsonGenerator generator;
+
+	private final List<User> chunk = new ArrayList<>(CHUNK_SIZE);
+
+	private final List<Integer> chunkLines = new ArrayList<>(CHUNK_SIZE);
+
+	private long imported = 0;
+
+	private long failed = 0;
+
+	UserImporter(UserService userService, Validator validator, UserMapper userMapper, JsonGenerator generator) {
+		this.userService = userService;
+		this.validator = validator;
+		this.userMapper = userMapper;
+		this.generator = generator;
+	}
+
+	void importAll(UserImportReader reader) throws IOException {
+		UserImportReader.Line line;
+		while ((line = reader.next()) != null) {
+			if (line.error != null) {
+				fail(line.number, line.error);
+				continue;
+			}
+			User user = userMapper.toUser(line.user);
+			Set<ConstraintViolation<User>> violations = validator.validate(user);
+			if (!violations.isEmpty()) {
+				fail(line.number, describe(violations));
+				continue;
+			}
+			// the age column can't be null, although User allows it until it is saved
+			if (user.getAge() == null) {
+				fail(line.number, "age: must not be null");
+				continue;
+			}
+			chunk.add(user);
+			chunkLines.add(line.number);
+			if (chunk.size() == CHUNK_SIZE) {
+				save();
+			}
+		}
+		save();
+		generator.writeStartObject();
+		generator.writeNumberField("imported", imported);
+		generator.writeNumberField("failed", failed);
+		generator.writeEndObject();
+		generator.writeRaw('\n');
+	}
+
+	private void save() throws IOException {
+		if (chunk.isEmpty()) {
+			return;
+		}
+		try {
+			userService.createAll(copiesOf(chunk));
+			imported += chunk.size();
+		} catch (RuntimeException e) {
+			// the whole chunk was rolled back, find out which users were the problem
+			for (int i = 0; i < chunk.size(); i++) {
+				User user = chunk.get(i);
+				try {
+					userService.create(new User(user.getForename(), user.getSurname(), user.getAge()));
+					imported++;
+				} catch (RuntimeException userFailure) {
+					fail(chunkLines.get(i), "User could not be saved");
+				}
+			}
+		}
+		chunk.clear();
+		chunkLines.clear();
+		generator.flush();
+	}
+
+	// saving assigns the users ids even if the transaction then rolls back, the originals are
+	// kept unsaved for the retry
+	private static List<User> copiesOf(List<User> users) {
+		List<User> copies = new ArrayList<>(users.size());
+		for (User user : users) {
+			copies.add(new User(user.getForename(), user.getSurname(), user.getAge()));
+		}
+		return copies;
+	}
+
+	private void fail(int lineNumber, String error) throws IOException {
+		failed++;
+		generator.writeStartObject();
+		generator.writeNumberField("line", lineNumber);
+		generator.writeStringField("error", error);
+		generator.writeEndObject();
+		generator.writeRaw('\n');
+	}
+
+	private static String describe(Set<ConstraintViolation<User>> violations) {
+		StringBuilder description = new StringBuilder();
+		for (ConstraintViolation<User> violation : violations) {
+			if (description.length() > 0) {
+				description.append(", ");
+			}
+			description.append(violation.getPropertyPath()).append(": ").append(violation.getMessage());
+		}
+		return description.toString();
+	}
+}
@@ -0,0 +1,78 @@
+package com.qa.user_app.controller;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.stereotype.Component;
+
+import com.qa.user_app.controller.request_object.UserRequest;
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.service.UserField;
+import com.qa.user_app.service.dto.UserDTO;
+
+// Converts between what the API sends and receives and the User entity
+// - plain getters and setters, so no reflection or type introspection happens per call
+//   (compare UserMappingBenchmark in the jmh profile)
+// - entities never leave the controller, so serializing a response can't trigger lazy loading
+//   and request bodies are never managed entities
+@Component
+public class UserMapper {
+
+	// a new, unsaved user, the id and version are assigned when it is saved
+	public User toUser(UserRequest request) {
+		return new User(request.getForename(), request.getSurname(), request.getAge());
+	}
+
+	public List<User> toUsers(List<UserRequest> requests) {
+		List<User> users = new ArrayList<>(requests.size());
+		for (UserRequest request : requests) {
+			users.add(toUser(request));
+		}
+		return users;
+	}
+
+	public UserDTO toDTO(User user) {
+		return new UserDTO(user.getId(), user.getForename(), user.getSurname(), user.getAge());
+	}
+
+	// the user as a JSON object of only the given fields, in the order of UserField
+	public Map<String, Object> toMap(User user, Set<UserField> fields) {
+		Map<String, Object> map = new LinkedHashMap<>();
+		for (UserField field : fields) {
+			switch (field) {
+			case ID:
+				map.put("id", user.getId());
+				break;
+			case FORENAME:
+				map.put("forename", user.getForename());
+				break;
+			case SURNAME:
+				map.put("surname", user.getSurname());
+				break;
+			case AGE:
+				map.put("age", user.getAge());
+				break;
+			}
+		}
+		return map;
+	}
+
+	public List<Map<String, Object>> toMaps(List<User> users, Set<UserField> fields) {
+		List<Map<String, Object>> maps = new ArrayList<>(users.size());
+		for (User user : users) {
+			maps.add(toMap(user, fields));
+		}
+		return maps;
+	}
+
+	public List<UserDTO> toDTOs(List<User> users) {
+		List<UserDTO> dtos = new ArrayList<>(users.size());
+		for (User user : users) {
+			dtos.add(toDTO(user));
+		}
+		return dtos;
+	}
+}
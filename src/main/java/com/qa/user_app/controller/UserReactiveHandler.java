@@ -0,0 +1,141 @@
+package com.qa.user_app.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.function.RouterFunction;
+import org.springframework.web.servlet.function.RouterFunctions;
+import org.springframework.web.servlet.function.ServerRequest;
+import org.springframework.web.servlet.function.ServerResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.data.repository.UserReactiveRepository;
+import com.qa.user_app.execptions.UserNotFoundException;
+import com.qa.user_app.service.UserService;
+import com.qa.user_app.service.dto.UserDTO;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Non-blocking reads of users, as functional endpoints (WebMvc.fn) at /reactive/user
+// - reads go straight to UserReactiveRepository over R2DBC, no container or database thread
+//   waits for the database, the response is written once the rows arrive
+// - GET /reactive/user/{id}, GET /reactive/user and GET /reactive/user/search?surname= answer
+//   as their /user counterparts do (ETags and X-Next-Cursor included), but bypass the user cache,
+//   the response cache and admission control
+// - GET /reactive/user/export streams every user as NDJSON with backpressure, a chunk of users
+//   is only read once the previous one has been written to the client
+@Component
+public class UserReactiveHandler {
+
+	public static final String PATH = "/reactive/user";
+
+	// users written (and flushed) together by the export, the response is flushed once per chunk
+	static final int EXPORT_CHUNK_SIZE = 100;
+
+	private UserReactiveRepository userReactiveRepository;
+
+	private UserMapper userMapper;
+
+	private ObjectWriter writer;
+
+	@Autowired
+	public UserReactiveHandler(UserReactiveRepository userReactiveRepository, UserMapper userMapper,
+			ObjectMapper objectMapper) {
+		this.userReactiveRepository = userReactiveRepository;
+		this.userMapper = userMapper;
+		this.writer = objectMapper.writerFor(UserDTO.class);
+	}
+
+	public RouterFunction<ServerResponse> routes() {
+		return RouterFunctions.route()
+				.GET(PATH + "/export", this::exportUsers)
+				.GET(PATH + "/search", this::searchUsers)
+				.GET(PATH + "/{id}", this::getUserById)
+				.GET(PATH, this::getUsers)
+				.onError(NumberFormatException.class,
+						(e, request) -> ServerResponse.badRequest().body("Not a number: " + e.getMessage()))
+				.build();
+	}
+
+	// READ BY ID, as GET /user/{id}
+	public ServerResponse getUserById(ServerRequest request) {
+		int id = Integer.parseInt(request.pathVariable("id"));
+		return ServerResponse.async(userReactiveRepository.findById(id)
+				.map(user -> ServerResponse.ok().eTag(UserETags.of(user)).body(userMapper.toDTO(user)))
+				.defaultIfEmpty(ServerResponse.status(HttpStatus.NOT_FOUND)
+						.body(new UserNotFoundException(id).getMessage())));
+	}
+
+	// READ ALL (a page at a time, in id order), as GET /user
+	public ServerResponse getUsers(ServerRequest request) {
+		int after = intParam(request, "after", 0);
+		int pageSize = pageSize(request);
+		return pageResponse(userReactiveRepository.findPageAfterId(after, pageSize + 1), pageSize);
+	}
+
+	// SEARCH by surname (a page at a time, in id order), as GET /user/search?surname=
+	public ServerResponse searchUsers(ServerRequest request) {
+		String surname = request.param("surname").filter(value -> !value.isEmpty()).orElse(null);
+		if (surname == null) {
+			return ServerResponse.badRequest().body("surname is required");
+		}
+		int after = intParam(request, "after", 0);
+		int pageSize = pageSize(request);
+		return pageResponse(userReactiveRepository.findPageBySurnameAfterId(surname, after, pageSize + 1), pageSize);
+	}
+
+	// EXPORT, as GET /user/export
+	public ServerResponse exportUsers(ServerRequest request) {
+		StreamingTimeoutInterceptor.streaming();
+		Flux<byte[]> chunks = userReactiveRepository.streamAll()
+				.buffer(EXPORT_CHUNK_SIZE)
+				.map(this::toNdjson);
+		return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON).body(chunks);
+	}
+
+	// one row more than pageSize is read, to know whether there is a next page
+	private ServerResponse pageResponse(Flux<User> rows, int pageSize) {
+		Mono<ServerResponse> response = rows.collectList().map(users -> {
+			List<User> page = users.size() > pageSize ? new ArrayList<>(users.subList(0, pageSize)) : users;
+			Integer nextCursor = users.size() > pageSize ? page.get(pageSize - 1).getId() : null;
+			ServerResponse.BodyBuilder builder = ServerResponse.ok().eTag(UserETags.of(page, nextCursor));
+			if (nextCursor != null) {
+				builder.header(UserController.NEXT_CURSOR_HEADER, String.valueOf(nextCursor));
+			}
+			return builder.body(userMapper.toDTOs(page));
+		});
+		return ServerResponse.async(response);
+	}
+
+	private byte[] toNdjson(List<User> users) {
+		ByteArrayOutputStream chunk = new ByteArrayOutputStream(users.size() * 64);
+		try {
+			for (User user : users) {
+				writer.writeValue(chunk, userMapper.toDTO(user));
+				chunk.write('\n');
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return chunk.toByteArray();
+	}
+
+	private static int pageSize(ServerRequest request) {
+		return Math.min(Math.max(intParam(request, "limit", UserService.DEFAULT_PAGE_SIZE), 1),
+				UserService.MAX_PAGE_SIZE);
+	}
+
+	private static int intParam(ServerRequest request, String name, int defaultValue) {
+		return request.param(name).map(Integer::parseInt).orElse(defaultValue);
+	}
+}
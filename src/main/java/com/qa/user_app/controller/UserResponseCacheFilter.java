@@ -0,0 +1,210 @@
+package com.qa.user_app.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.qa.user_app.data.datasource.ReplicaRoutingDataSource;
+import com.qa.user_app.service.UserResponseCache;
+import com.qa.user_app.service.UserResponseCache.CachedResponse;
+
+// Answers repeated reads of unchanged users from the bytes of an earlier response, without
+// running the controller or Jackson again (see UserResponseCache for how writes invalidate them)
+// - GET /user (any page, sort, fields or ids), GET /user/search and GET /user/{id}
+// - a miss runs the request as normal and keeps its body and headers if it was a 200 read from
+//   the primary, a replica may be behind a write whose invalidation has already happened
+// - a hit answers If-None-Match itself, otherwise writes the stored bytes straight to the
+//   response, gzipped when the client accepts it and user.response-cache.gzip is set
+// - only bodies of the types Tomcat compresses (server.compression.mime-types) get a gzipped copy,
+//   Smile and CBOR are sent as they are either way
+// - the key includes the Accept header, so each representation is cached separately
+// - the ETag is kept weak, as a hit may be sent gzipped where the original wasn't
+public class UserResponseCacheFilter extends OncePerRequestFilter {
+
+	// bodies smaller than this aren't worth a gzipped copy
+	static final int MIN_GZIP_SIZE = 1024;
+
+	private static final Pattern USER_PATH = Pattern.compile("/user/(\\d{1,9})");
+
+	// headers that belong to a single response rather than its content
+	private static final Set<String> PER_RESPONSE_HEADERS = Set.of(HttpHeaders.CONTENT_TYPE.toLowerCase(),
+			HttpHeaders.CONTENT_LENGTH.toLowerCase(), HttpHeaders.TRANSFER_ENCODING.toLowerCase(),
+			HttpHeaders.DATE.toLowerCase(), HttpHeaders.SET_COOKIE.toLowerCase(),
+			HttpHeaders.CONTENT_ENCODING.toLowerCase());
+
+	private UserResponseCache cache;
+
+	private boolean gzip;
+
+	// content types worth a gzipped copy
+	private List<MediaType> gzipTypes;
+
+	public UserResponseCacheFilter(UserResponseCache cache, boolean gzip, String[] gzipTypes) {
+		this.cache = cache;
+		this.gzip = gzip;
+		this.gzipTypes = MediaType.parseMediaTypes(Arrays.asList(gzipTypes));
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		if (!cache.isEnabled() || !"GET".equals(request.getMethod())) {
+			return true;
+		}
+		String path = pathOf(request);
+		return !path.equals("/user") && !path.equals("/user/search") && !USER_PATH.matcher(path).matches();
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		// the generation is read before the users are, a write after this point changes it
+		String key = keyOf(request);
+		CachedResponse cached = cache.get(key);
+		if (cached != null) {
+			write(request, response, cached);
+			return;
+		}
+		if (gzip) {
+			response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		}
+		ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+		ReplicaRoutingDataSource.replicaRead();
+		try {
+			chain.doFilter(request, wrapper);
+			if (wrapper.getStatus() == HttpStatus.OK.value() && !request.isAsyncStarted()
+					&& !ReplicaRoutingDataSource.replicaRead()) {
+				byte[] body = wrapper.getContentAsByteArray();
+				byte[] gzippedBody = gzip && body.length >= MIN_GZIP_SIZE && isGzipType(wrapper.getContentType())
+						? gzip(body)
+						: null;
+				cache.put(key, new CachedResponse(body, gzippedBody, headersOf(wrapper)));
+			}
+		} finally {
+			wrapper.copyBodyToResponse();
+		}
+	}
+
+	// the type and subtype are compared, ignoring parameters such as the charset, as Tomcat does
+	private boolean isGzipType(String contentType) {
+		if (contentType == null) {
+			return false;
+		}
+		MediaType type;
+		try {
+			type = MediaType.parseMediaType(contentType);
+		} catch (InvalidMediaTypeException imte) {
+			return false;
+		}
+		for (MediaType gzipType : gzipTypes) {
+			if (gzipType.equalsTypeAndSubtype(type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private String keyOf(HttpServletRequest request) {
+		String path = pathOf(request);
+		Matcher user = USER_PATH.matcher(path);
+		long generation = user.matches() ? cache.userGeneration(Integer.parseInt(user.group(1)))
+				: cache.listGeneration();
+		String query = request.getQueryString();
+		return generation + " " + request.getHeader(HttpHeaders.ACCEPT) + " " + path
+				+ (query == null ? "" : "?" + query);
+	}
+
+	private void write(HttpServletRequest request, HttpServletResponse response, CachedResponse cached)
+			throws IOException {
+		List<String> etags = cached.getHeaders().get(HttpHeaders.ETAG);
+		String etag = etags == null ? null : etags.get(0);
+		if (etag != null && matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+			response.setStatus(HttpStatus.NOT_MODIFIED.value());
+			response.setHeader(HttpHeaders.ETAG, etag);
+			return;
+		}
+		cached.getHeaders().forEach((name, values) -> {
+			for (String value : values) {
+				response.addHeader(name, value);
+			}
+		});
+		byte[] body = cached.getBody();
+		if (cached.getGzippedBody() != null && acceptsGzip(request)) {
+			body = cached.getGzippedBody();
+			response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+		}
+		response.setStatus(HttpStatus.OK.value());
+		response.setContentLength(body.length);
+		response.getOutputStream().write(body);
+	}
+
+	private static Map<String, List<String>> headersOf(ContentCachingResponseWrapper response) {
+		Map<String, List<String>> headers = new LinkedHashMap<>();
+		if (response.getContentType() != null) {
+			headers.put(HttpHeaders.CONTENT_TYPE, List.of(response.getContentType()));
+		}
+		for (String name : response.getHeaderNames()) {
+			if (name.equalsIgnoreCase(HttpHeaders.ETAG)) {
+				headers.put(HttpHeaders.ETAG, List.of(weak(response.getHeader(name))));
+			} else if (!PER_RESPONSE_HEADERS.contains(name.toLowerCase()) && !headers.containsKey(name)) {
+				headers.put(name, new ArrayList<>(response.getHeaders(name)));
+			}
+		}
+		return headers;
+	}
+
+	private static String weak(String etag) {
+		return etag.startsWith("W/") ? etag : "W/" + etag;
+	}
+
+	// If-None-Match is a list of ETags (weak or strong) or *
+	private static boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		String strong = etag.startsWith("W/") ? etag.substring(2) : etag;
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.equals("*") || candidate.equals(strong) || candidate.equals("W/" + strong)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean acceptsGzip(HttpServletRequest request) {
+		String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+		return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+	}
+
+	private static byte[] gzip(byte[] body) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+			gzip.write(body);
+		}
+		return compressed.toByteArray();
+	}
+
+	private static String pathOf(HttpServletRequest request) {
+		return request.getRequestURI().substring(request.getContextPath().length());
+	}
+}
@@ -22,6 +22,17 @@ public class UserRequest {
 	@Min(18)
 	private Integer age;
 
+	public UserRequest() {
+		super();
+	}
+
+	public UserRequest(String forename, String surname, Integer age) {
+		super();
+		this.forename = forename;
+		this.surname = surname;
+		this.age = age;
+	}
+
 	public String getForename() {
 		return forename;
 	}
@@ -63,5 +74,10 @@ public class UserRequest {
 		return Objects.equals(age, other.age) && Objects.equals(forename, other.forename)
 				&& Objects.equals(surname, other.surname);
 	}
-	
+
+	@Override
+	public String toString() {
+		return "UserRequest [forename=" + forename + ", surname=" + surname + ", age=" + age + "]";
+	}
+
 }
\ No newline at end of file
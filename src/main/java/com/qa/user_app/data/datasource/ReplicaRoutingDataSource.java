@@ -0,0 +1,205 @@
+package com.qa.user_app.data.datasource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+// Sends read only transactions to a replica and everything else to the primary
+// - the connection is chosen when it is first used, so this must sit behind a
+//   LazyConnectionDataSourceProxy, otherwise the transaction's read only flag isn't set yet
+// - replicas are checked every checkInterval, one that can't be reached or is more than maxLag
+//   behind the primary is skipped until it catches up, with none left reads go to the primary
+// - replicas are only used once they have passed a check, so startup reads use the primary
+// - reads on a replica may miss writes made in the last maxLag, even ones made by the same client,
+//   so a thread handed a replica connection is marked, for callers that must not keep what it
+//   read (see replicaRead)
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+	private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+	public static final String PRIMARY = "primary";
+
+	private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+	private final Map<String, DataSource> replicas;
+
+	// returns how many seconds the replica is behind, blank to only check it can be reached
+	private final String lagQuery;
+
+	// column of the lag query holding the lag, blank for the first column
+	private final String lagColumn;
+
+	private final Duration maxLag;
+
+	private final Duration checkInterval;
+
+	private ScheduledExecutorService executor;
+
+	// replicas that passed their last check, replaced as a whole on each check
+	private volatile List<String> available = List.of();
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, String lagQuery, String lagColumn,
+			Duration maxLag, Duration checkInterval) {
+		this.replicas = new LinkedHashMap<>();
+		for (DataSource replica : replicas) {
+			this.replicas.put("replica-" + this.replicas.size(), replica);
+		}
+		this.lagQuery = lagQuery;
+		this.lagColumn = lagColumn;
+		this.maxLag = maxLag;
+		this.checkInterval = checkInterval;
+		Map<Object, Object> targets = new HashMap<>(this.replicas);
+		targets.put(PRIMARY, primary);
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(primary);
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		super.afterPropertiesSet();
+		checkReplicas();
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("replica-check-");
+		threadFactory.setDaemon(true);
+		executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+		executor.scheduleWithFixedDelay(this::checkReplicas, checkInterval.toNanos(), checkInterval.toNanos(),
+				TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return PRIMARY;
+		}
+		List<String> candidates = available;
+		if (candidates.isEmpty()) {
+			return PRIMARY;
+		}
+		// round robin across the replicas that are caught up
+		return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+	}
+
+	// A replica that can't hand out a connection is skipped until its next successful check
+	// and the read goes to the primary instead
+	@Override
+	public Connection getConnection() throws SQLException {
+		Object key = determineCurrentLookupKey();
+		DataSource target = getResolvedDataSources().get(key);
+		if (PRIMARY.equals(key)) {
+			return target.getConnection();
+		}
+		try {
+			Connection connection = target.getConnection();
+			REPLICA_READ.set(Boolean.TRUE);
+			return connection;
+		} catch (SQLException e) {
+			unavailable((String) key, e);
+			return getResolvedDefaultDataSource().getConnection();
+		}
+	}
+
+	// Whether the current thread has been handed a replica connection since it last asked, and
+	// starts over
+	public static boolean replicaRead() {
+		boolean replicaRead = REPLICA_READ.get() != null;
+		REPLICA_READ.remove();
+		return replicaRead;
+	}
+
+	// The replicas reads can currently be sent to
+	public List<String> getAvailableReplicas() {
+		return available;
+	}
+
+	public void checkReplicas() {
+		List<String> caughtUp = new ArrayList<>();
+		replicas.forEach((name, replica) -> {
+			if (isCaughtUp(name, replica)) {
+				caughtUp.add(name);
+			}
+		});
+		synchronized (this) {
+			if (!caughtUp.equals(available)) {
+				log.info("Reads are sent to {}", caughtUp.isEmpty() ? PRIMARY : caughtUp);
+			}
+			available = List.copyOf(caughtUp);
+		}
+	}
+
+	private boolean isCaughtUp(String name, DataSource replica) {
+		try (Connection connection = replica.getConnection()) {
+			if (!StringUtils.hasText(lagQuery)) {
+				return connection.isValid((int) Math.max(1, checkInterval.getSeconds()));
+			}
+			try (Statement statement = connection.createStatement();
+					ResultSet result = statement.executeQuery(lagQuery)) {
+				// no row or a null lag means the replica isn't replicating
+				if (!result.next()) {
+					log.warn("Replica {} is not replicating", name);
+					return false;
+				}
+				long lag = StringUtils.hasText(lagColumn) ? result.getLong(lagColumn) : result.getLong(1);
+				if (result.wasNull()) {
+					log.warn("Replica {} is not replicating", name);
+					return false;
+				}
+				if (lag > maxLag.getSeconds()) {
+					log.warn("Replica {} is {}s behind the primary", name, lag);
+					return false;
+				}
+				return true;
+			}
+		} catch (SQLException e) {
+			log.warn("Replica {} could not be checked: {}", name, e.getMessage());
+			return false;
+		}
+	}
+
+	private synchronized void unavailable(String name, SQLException e) {
+		log.warn("Replica {} is unavailable: {}", name, e.getMessage());
+		List<String> remaining = new ArrayList<>(available);
+		remaining.remove(name);
+		available = List.copyOf(remaining);
+	}
+
+	public void close() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+		for (DataSource replica : replicas.values()) {
+			closeQuietly(replica);
+		}
+		closeQuietly(getResolvedDefaultDataSource());
+	}
+
+	private static void closeQuietly(DataSource dataSource) {
+		if (dataSource instanceof AutoCloseable) {
+			try {
+				((AutoCloseable) dataSource).close();
+			} catch (Exception e) {
+				log.warn("Could not close data source: {}", e.getMessage());
+			}
+		}
+	}
+}
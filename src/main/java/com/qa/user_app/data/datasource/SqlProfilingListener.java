@@ -0,0 +1,77 @@
+package com.qa.user_app.data.datasource;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.logging.DefaultQueryLogEntryCreator;
+
+// Times every statement run through the proxied DataSource (see SqlProfilingConfiguration)
+// - each execution is added to SqlStatistics under its statement, a batch counts once under
+//   the statements it ran
+// - an execution slower than slowThreshold is logged at WARN with its bound parameters, as the
+//   parameters are only formatted for these it costs nothing for the rest
+public class SqlProfilingListener implements QueryExecutionListener {
+
+	private static final Logger log = LoggerFactory.getLogger(SqlProfilingListener.class);
+
+	// a batch of thousands of inserts would otherwise log every one of their parameters
+	static final int MAX_LOG_LENGTH = 4096;
+
+	private static final String START_NANOS = SqlProfilingListener.class.getName() + ".start";
+
+	private final SqlStatistics statistics;
+
+	private final long slowThresholdNanos;
+
+	private final DefaultQueryLogEntryCreator logEntryCreator = new DefaultQueryLogEntryCreator();
+
+	public SqlProfilingListener(SqlStatistics statistics, Duration slowThreshold) {
+		this.statistics = statistics;
+		this.slowThresholdNanos = slowThreshold.toNanos();
+	}
+
+	@Override
+	public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+		execInfo.addCustomValue(START_NANOS, System.nanoTime());
+	}
+
+	@Override
+	public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+		Long start = execInfo.getCustomValue(START_NANOS, Long.class);
+		if (start == null || queryInfoList.isEmpty()) {
+			return;
+		}
+		long nanos = System.nanoTime() - start;
+		statistics.record(sqlOf(queryInfoList), nanos);
+		if (nanos >= slowThresholdNanos && log.isWarnEnabled()) {
+			String entry = logEntryCreator.getLogEntry(execInfo, queryInfoList, false, true);
+			if (entry.length() > MAX_LOG_LENGTH) {
+				entry = entry.substring(0, MAX_LOG_LENGTH) + "...";
+			}
+			log.warn("Slow SQL ({}ms): {}", nanos / 1_000_000, entry);
+		}
+	}
+
+	private static String sqlOf(List<QueryInfo> queryInfoList) {
+		if (queryInfoList.size() == 1) {
+			return queryInfoList.get(0).getQuery();
+		}
+		// a Statement batch, which may run several different statements
+		StringBuilder sql = new StringBuilder();
+		for (QueryInfo queryInfo : queryInfoList) {
+			if (sql.indexOf(queryInfo.getQuery()) < 0) {
+				if (sql.length() > 0) {
+					sql.append("; ");
+				}
+				sql.append(queryInfo.getQuery());
+			}
+		}
+		return sql.toString();
+	}
+}
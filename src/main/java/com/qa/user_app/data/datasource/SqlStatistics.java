@@ -0,0 +1,184 @@
+package com.qa.user_app.data.datasource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+// Execution times of every SQL statement since startup (or the last reset), grouped by statement
+// - statements are grouped once their literals are replaced with ? and IN lists of any length
+//   are folded into one, so "where id in (?, ?)" and "where id in (?, ?, ?)" count together
+// - each statement keeps its count, total and max time, and a histogram of times in BUCKETS
+// - at most maxStatements are kept, any statement after that is counted under OTHER
+// - recording only adds to counters, it never locks
+public class SqlStatistics {
+
+	public static final String OTHER = "(other statements)";
+
+	// upper bound of each histogram bucket, the last bucket has no bound
+	static final long[] BUCKETS = { micros(100), micros(250), micros(500), millis(1), micros(2500), millis(5),
+			millis(10), millis(25), millis(50), millis(100), millis(250), millis(500), millis(1000), millis(2500),
+			millis(5000), millis(10000) };
+
+	private static final String[] BUCKET_LABELS = { "<=100us", "<=250us", "<=500us", "<=1ms", "<=2.5ms", "<=5ms",
+			"<=10ms", "<=25ms", "<=50ms", "<=100ms", "<=250ms", "<=500ms", "<=1s", "<=2.5s", "<=5s", "<=10s",
+			">10s" };
+
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+	// not the digits of a name such as user0_ or a qualified name
+	private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.$])-?\\d+(?:\\.\\d+)?(?![\\w$])");
+
+	private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+
+	private final int maxStatements;
+
+	private final Map<String, Counters> statements = new ConcurrentHashMap<>();
+
+	// the statements Hibernate sends are few and repeated, so each is only normalized once
+	private final Cache<String, String> normalized;
+
+	public SqlStatistics(int maxStatements) {
+		this.maxStatements = maxStatements;
+		this.normalized = Caffeine.newBuilder().maximumSize(maxStatements * 4L).build();
+	}
+
+	public void record(String sql, long nanos) {
+		String statement = normalized.get(sql, SqlStatistics::normalize);
+		Counters counters = statements.get(statement);
+		if (counters == null) {
+			// a few more than maxStatements may get in when they race, that's fine
+			counters = statements.size() < maxStatements ? statements.computeIfAbsent(statement, key -> new Counters())
+					: statements.computeIfAbsent(OTHER, key -> new Counters());
+		}
+		counters.record(nanos);
+	}
+
+	// Every statement, the one that has taken the most time in total first
+	public List<Entry> getStatements() {
+		List<Entry> entries = new ArrayList<>(statements.size());
+		statements.forEach((statement, counters) -> entries.add(counters.toEntry(statement)));
+		entries.sort(Comparator.comparingDouble(Entry::getTotalMillis).reversed());
+		return entries;
+	}
+
+	public void reset() {
+		statements.clear();
+	}
+
+	static String normalize(String sql) {
+		String statement = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+		statement = STRING_LITERAL.matcher(statement).replaceAll("?");
+		statement = NUMBER_LITERAL.matcher(statement).replaceAll("?");
+		return PARAMETER_LIST.matcher(statement).replaceAll("(?, ...)");
+	}
+
+	private static long micros(long micros) {
+		return TimeUnit.MICROSECONDS.toNanos(micros);
+	}
+
+	private static long millis(long millis) {
+		return TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	private static double toMillis(long nanos) {
+		return nanos / 1_000_000.0;
+	}
+
+	private static class Counters {
+
+		private final LongAdder count = new LongAdder();
+
+		private final LongAdder totalNanos = new LongAdder();
+
+		private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+		private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+
+		private Counters() {
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		private void record(long nanos) {
+			count.increment();
+			totalNanos.add(nanos);
+			maxNanos.accumulate(nanos);
+			int bucket = 0;
+			while (bucket < BUCKETS.length && nanos > BUCKETS[bucket]) {
+				bucket++;
+			}
+			buckets[bucket].increment();
+		}
+
+		private Entry toEntry(String statement) {
+			Map<String, Long> histogram = new LinkedHashMap<>();
+			for (int i = 0; i < buckets.length; i++) {
+				long bucketCount = buckets[i].sum();
+				if (bucketCount > 0) {
+					histogram.put(BUCKET_LABELS[i], bucketCount);
+				}
+			}
+			return new Entry(statement, count.sum(), toMillis(totalNanos.sum()), toMillis(maxNanos.get()), histogram);
+		}
+	}
+
+	// The times of one statement, in milliseconds
+	// - the histogram only has the buckets with a statement in them, keyed by their bound
+	public static class Entry {
+
+		private final String sql;
+
+		private final long count;
+
+		private final double totalMillis;
+
+		private final double maxMillis;
+
+		private final Map<String, Long> histogram;
+
+		private Entry(String sql, long count, double totalMillis, double maxMillis, Map<String, Long> histogram) {
+			this.sql = sql;
+			this.count = count;
+			this.totalMillis = totalMillis;
+			this.maxMillis = maxMillis;
+			this.histogram = histogram;
+		}
+
+		public String getSql() {
+			return sql;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public double getTotalMillis() {
+			return totalMillis;
+		}
+
+		public double getMeanMillis() {
+			return count == 0 ? 0 : totalMillis / count;
+		}
+
+		public double getMaxMillis() {
+			return maxMillis;
+		}
+
+		public Map<String, Long> getHistogram() {
+			return histogram;
+		}
+	}
+}
@@ -3,24 +3,35 @@ package com.qa.user_app.data.entity;
 import java.util.Objects;
 
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.hibernate.validator.constraints.Length;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 @Entity
 @Table(name = "user")
+@EntityListeners({ UserIdListener.class, UserResponseCacheListener.class })
 public class User {
 	
 	@Id // any class marked with @Entity must have @Id to signify
 			// the primary key field
-	// this tells hibernate to auto-increment IDs
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	// this tells hibernate to take IDs from the user_seq sequence
+	// - unlike IDENTITY (auto-increment) the id is known before the INSERT, so inserts can be
+	//   sent to the database in JDBC batches
+	// - allocationSize reserves 50 ids per sequence call (pooled), it must match the
+	//   sequence's INCREMENT BY in schema.sql
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+	@SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
 	//Primary key field, want our IDs generated for us
 	private Integer id;
 	
@@ -37,6 +48,12 @@ public class User {
 	@Min(18)
 	private Integer age;
 	
+	// incremented by every update, used for optimistic locking
+	// - not part of the JSON body, clients see it as the ETag of the user instead
+	@Version
+	@JsonIgnore
+	private Integer version;
+	
 	public User() {
 		super();
 	}
@@ -82,6 +99,12 @@ public class User {
 	public void setAge(int age) {
 		this.age = age;
 	}
+	public Integer getVersion() {
+		return version;
+	}
+	public void setVersion(Integer version) {
+		this.version = version;
+	}
 	
 	@Override
 	public String toString() {
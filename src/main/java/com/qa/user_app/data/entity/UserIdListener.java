@@ -0,0 +1,28 @@
+package com.qa.user_app.data.entity;
+
+import javax.persistence.PostPersist;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.qa.user_app.service.UserIdFilter;
+
+// Adds the id of every user persisted through JPA to the UserIdFilter
+// - created by hibernate through spring, the filter is looked up lazily as it depends on the
+//   repository, which needs the entity manager factory that creates this listener
+// - runs as soon as the id is allocated, before the INSERT commits, so the filter never says a
+//   committed user doesn't exist (a rolled back insert only leaves a harmless extra id behind)
+public class UserIdListener {
+
+	private ObjectProvider<UserIdFilter> userIdFilter;
+
+	@Autowired
+	public UserIdListener(ObjectProvider<UserIdFilter> userIdFilter) {
+		this.userIdFilter = userIdFilter;
+	}
+
+	@PostPersist
+	public void userPersisted(User user) {
+		userIdFilter.ifAvailable(filter -> filter.add(user.getId()));
+	}
+}
@@ -0,0 +1,30 @@
+package com.qa.user_app.data.entity;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.qa.user_app.service.UserResponseCache;
+
+// Moves the UserResponseCache on as soon as JPA writes a user, before the write commits
+// - covers writes that don't go through UserService (which invalidates after commit too)
+// - bulk JPQL updates and deletes bypass entity listeners, UserService publishes events for those
+public class UserResponseCacheListener {
+
+	private ObjectProvider<UserResponseCache> userResponseCache;
+
+	@Autowired
+	public UserResponseCacheListener(ObjectProvider<UserResponseCache> userResponseCache) {
+		this.userResponseCache = userResponseCache;
+	}
+
+	@PostPersist
+	@PostUpdate
+	@PostRemove
+	public void userWritten(User user) {
+		userResponseCache.ifAvailable(cache -> cache.invalidate(user.getId()));
+	}
+}
@@ -0,0 +1,40 @@
+package com.qa.user_app.data.repository;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+import com.qa.user_app.data.entity.User;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Non-blocking reads of users over R2DBC, for /reactive/user (see ReactiveDataSourceConfiguration)
+// - read only, every write still goes through UserRepository and JPA
+// - the users are plain objects mapped from the columns, they are never managed by hibernate and
+//   skip the user cache, so they always show the committed row
+// - the SQL is written out as the User entity's JPA mapping (sequence ids, @Version) means
+//   nothing to Spring Data R2DBC
+// - built by ReactiveDataSourceConfiguration, not found by repository scanning, where JPA would
+//   refuse it
+@NoRepositoryBean
+public interface UserReactiveRepository extends Repository<User, Integer> {
+
+	@Query("SELECT id, forename, surname, age, version FROM user WHERE id = :id")
+	Mono<User> findById(@Param("id") Integer id);
+
+	// Keyset pagination in id order, as UserRepository.findByIdGreaterThanOrderByIdAsc
+	@Query("SELECT id, forename, surname, age, version FROM user WHERE id > :after ORDER BY id LIMIT :limit")
+	Flux<User> findPageAfterId(@Param("after") Integer after, @Param("limit") int limit);
+
+	// backed by idx_user_surname_id
+	@Query("SELECT id, forename, surname, age, version FROM user WHERE surname = :surname AND id > :after "
+			+ "ORDER BY surname, id LIMIT :limit")
+	Flux<User> findPageBySurnameAfterId(@Param("surname") String surname, @Param("after") Integer after,
+			@Param("limit") int limit);
+
+	// Every user in id order, rows are only read as fast as the subscriber requests them
+	@Query("SELECT id, forename, surname, age, version FROM user ORDER BY id")
+	Flux<User> streamAll();
+}
@@ -1,19 +1,106 @@
 package com.qa.user_app.data.repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.qa.user_app.data.entity.User;
 
 
 @Repository // this signifies its a bean, not necessary though as it is inherited
-public interface UserRepository extends JpaRepository<User, Integer>{
+public interface UserRepository extends JpaRepository<User, Integer>, UserSearchRepository {
 
 	// User is the type of entity being stored in the db
 		// Long is the type of the User entities id field
-		
+
 		// our repositories must be defined as interfaces as
 		// spring and hibernate will generate the implementations
-	
-	
+
+	// Keyset (cursor) pagination
+	// - rather than OFFSET, each page starts strictly after the last row of the previous page
+	//   so the database seeks straight to it using an index, however deep the page is
+	// - the Pageable is only used to apply a LIMIT, no count query is issued for a List
+	// - read only, the users are only ever returned, so hibernate keeps no snapshots of them
+
+	// ordered by the primary key
+	@QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"))
+	List<User> findByIdGreaterThanOrderByIdAsc(Integer id, Pageable pageable);
+
+	// ordered by surname, backed by idx_user_surname_id
+	@QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"))
+	List<User> findAllByOrderBySurnameAscIdAsc(Pageable pageable);
+
+	@QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"))
+	@Query("SELECT u FROM User u WHERE u.surname > :surname OR (u.surname = :surname AND u.id > :id) "
+			+ "ORDER BY u.surname ASC, u.id ASC")
+	List<User> findPageAfterSurname(@Param("surname") String surname, @Param("id") Integer id, Pageable pageable);
+
+	// ordered by age, backed by idx_user_age_id
+	@QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"))
+	List<User> findAllByOrderByAgeAscIdAsc(Pageable pageable);
+
+	@QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"))
+	@Query("SELECT u FROM User u WHERE u.age > :age OR (u.age = :age AND u.id > :id) "
+			+ "ORDER BY u.age ASC, u.id ASC")
+	List<User> findPageAfterAge(@Param("age") Integer age, @Param("id") Integer id, Pageable pageable);
+
+	// number of rows the JDBC driver pulls from the database per round trip when streaming
+	int STREAM_FETCH_SIZE = 1000;
+
+	// Streams every user in id order without materialising them all in a List
+	// - must be consumed inside a transaction and closed afterwards (try-with-resources)
+	// - read only, so hibernate keeps no snapshot of each row for dirty checking
+	@QueryHints({ @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+			@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true") })
+	@Query("SELECT u FROM User u ORDER BY u.id ASC")
+	Stream<User> streamAll();
+
+	// Streams the id of every user, the same rules as streamAll apply
+	// - only the primary key index is read, used to build the UserIdFilter
+	@QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+	@Query("SELECT u.id FROM User u")
+	Stream<Integer> streamAllIds();
+
+	// Single statement writes
+	// - each returns the number of rows affected, 0 means there was no user with that id, so
+	//   no existsById/findById round trip is needed first (and there is no window between the
+	//   check and the write for another request to delete the user)
+	// - pending changes are flushed first and the persistence context is cleared afterwards, as
+	//   bulk statements bypass it and would otherwise leave stale entities behind
+	@Transactional
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("UPDATE User u SET u.forename = :forename, u.surname = :surname, u.age = :age, "
+			+ "u.version = u.version + 1 WHERE u.id = :id")
+	int updateById(@Param("id") Integer id, @Param("forename") String forename, @Param("surname") String surname,
+			@Param("age") Integer age);
+
+	@Transactional
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("DELETE FROM User u WHERE u.id = :id")
+	int deleteUserById(@Param("id") Integer id);
+
+	// Optimistic versions of the above, they only affect the user if it is still at the given version
+	// - 0 rows means the user doesn't exist or somebody else has changed it since it was read
+	@Transactional
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("UPDATE User u SET u.forename = :forename, u.surname = :surname, u.age = :age, "
+			+ "u.version = u.version + 1 WHERE u.id = :id AND u.version = :version")
+	int updateByIdAndVersion(@Param("id") Integer id, @Param("version") Integer version,
+			@Param("forename") String forename, @Param("surname") String surname, @Param("age") Integer age);
+
+	@Transactional
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("DELETE FROM User u WHERE u.id = :id AND u.version = :version")
+	int deleteUserByIdAndVersion(@Param("id") Integer id, @Param("version") Integer version);
+
 }
@@ -0,0 +1,39 @@
+package com.qa.user_app.data.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.qa.user_app.data.entity.User;
+
+// Queries whose shape depends on the request (which filters were given, which columns are
+// wanted), implemented with the criteria API in UserSearchRepositoryImpl and mixed into
+// UserRepository
+public interface UserSearchRepository {
+
+	// At most limit users matching every filter that isn't null, in id order, after the user with
+	// id "after" (null for the first page)
+	// - surname must match exactly, forename only has to start with forenamePrefix
+	// - minAge and maxAge are inclusive
+	List<User> search(String surname, String forenamePrefix, Integer minAge, Integer maxAge, Integer after,
+			int limit);
+
+	// At most limit users whose forename or surname starts with each of the prefixes, ordered by
+	// surname, forename then id
+	// - compared by the columns' collation, so case is ignored by MySQL's default one but not by H2
+	List<User> suggest(List<String> namePrefixes, int limit);
+
+	// Projections
+	// - only the given attributes are selected, plus id and version which cursors and ETags need
+	// - each row is built into a new, unmanaged User with the other attributes left null, so
+	//   nothing is added to the persistence context or snapshotted for dirty checking
+
+	// search, selecting only the given attributes
+	List<User> search(Collection<String> attributes, String surname, String forenamePrefix, Integer minAge,
+			Integer maxAge, Integer after, int limit);
+
+	// At most limit users ordered by sortAttribute then id, selecting only the given attributes
+	// - the page starts after the user with id afterId whose sortAttribute is afterKey, or at the
+	//   beginning when afterId is null (afterKey is ignored when sorting by id)
+	List<User> findPage(Collection<String> attributes, String sortAttribute, Object afterKey, Integer afterId,
+			int limit);
+}
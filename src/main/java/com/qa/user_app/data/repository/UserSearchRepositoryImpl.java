@@ -0,0 +1,180 @@
+package com.qa.user_app.data.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import org.hibernate.jpa.QueryHints;
+
+import com.qa.user_app.data.entity.User;
+
+// Each filter is only added to the query when it is given, so the database picks the index
+// for the filters actually used (see schema.sql)
+// - surname                   idx_user_surname_id
+// - surname and forename      idx_user_surname_forename_id
+// - forename                  idx_user_forename_id
+// - age                       idx_user_age_id
+// a forename prefix is a LIKE 'prefix%', which is a range scan of the index, as is an age range
+public class UserSearchRepositoryImpl implements UserSearchRepository {
+
+	// escapes % and _ in a forename prefix so they match literally
+	private static final char LIKE_ESCAPE = '\\';
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	public List<User> search(String surname, String forenamePrefix, Integer minAge, Integer maxAge, Integer after,
+			int limit) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<User> query = cb.createQuery(User.class);
+		Root<User> user = query.from(User.class);
+
+		query.select(user).where(searchFilters(cb, user, surname, forenamePrefix, minAge, maxAge, after))
+				.orderBy(cb.asc(user.get("id")));
+
+		// nothing changes the users found, so hibernate needn't keep a snapshot of them
+		return entityManager.createQuery(query).setHint(QueryHints.HINT_READONLY, true).setMaxResults(limit)
+				.getResultList();
+	}
+
+	@Override
+	public List<User> suggest(List<String> namePrefixes, int limit) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<User> query = cb.createQuery(User.class);
+		Root<User> user = query.from(User.class);
+
+		// each prefix is a range scan of idx_user_forename_id or idx_user_surname_forename_id
+		List<Predicate> where = new ArrayList<>();
+		for (String prefix : namePrefixes) {
+			String pattern = escapeLike(prefix) + "%";
+			where.add(cb.or(cb.like(user.get("forename"), pattern, LIKE_ESCAPE),
+					cb.like(user.get("surname"), pattern, LIKE_ESCAPE)));
+		}
+		query.select(user).where(where.toArray(new Predicate[0]))
+				.orderBy(cb.asc(user.get("surname")), cb.asc(user.get("forename")), cb.asc(user.get("id")));
+
+		return entityManager.createQuery(query).setHint(QueryHints.HINT_READONLY, true).setMaxResults(limit)
+				.getResultList();
+	}
+
+	@Override
+	public List<User> search(Collection<String> attributes, String surname, String forenamePrefix, Integer minAge,
+			Integer maxAge, Integer after, int limit) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> query = cb.createTupleQuery();
+		Root<User> user = query.from(User.class);
+
+		query.where(searchFilters(cb, user, surname, forenamePrefix, minAge, maxAge, after))
+				.orderBy(cb.asc(user.get("id")));
+		return project(query, user, attributes, limit);
+	}
+
+	@Override
+	public List<User> findPage(Collection<String> attributes, String sortAttribute, Object afterKey, Integer afterId,
+			int limit) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> query = cb.createTupleQuery();
+		Root<User> user = query.from(User.class);
+
+		List<Order> orderBy = new ArrayList<>();
+		if (!"id".equals(sortAttribute)) {
+			orderBy.add(cb.asc(user.get(sortAttribute)));
+		}
+		orderBy.add(cb.asc(user.get("id")));
+		query.orderBy(orderBy);
+
+		// the same keyset conditions as UserRepository's page queries
+		if (afterId != null) {
+			Expression<Integer> id = user.get("id");
+			if ("id".equals(sortAttribute)) {
+				query.where(cb.greaterThan(id, afterId));
+			} else {
+				@SuppressWarnings("unchecked")
+				Expression<Comparable<Object>> key = user.get(sortAttribute);
+				@SuppressWarnings("unchecked")
+				Comparable<Object> after = (Comparable<Object>) afterKey;
+				query.where(cb.or(cb.greaterThan(key, after), cb.and(cb.equal(key, after), cb.greaterThan(id, afterId))));
+			}
+		}
+		return project(query, user, attributes, limit);
+	}
+
+	// selects the attributes (plus id and version) and builds a User from each row
+	private List<User> project(CriteriaQuery<Tuple> query, Root<User> user, Collection<String> attributes, int limit) {
+		Set<String> selected = new LinkedHashSet<>();
+		selected.add("id");
+		selected.add("version");
+		selected.addAll(attributes);
+		List<Selection<?>> selections = new ArrayList<>(selected.size());
+		for (String attribute : selected) {
+			selections.add(user.get(attribute).alias(attribute));
+		}
+		query.multiselect(selections);
+
+		List<Tuple> rows = entityManager.createQuery(query).setMaxResults(limit).getResultList();
+		List<User> users = new ArrayList<>(rows.size());
+		for (Tuple row : rows) {
+			User projected = new User();
+			projected.setId(row.get("id", Integer.class));
+			projected.setVersion(row.get("version", Integer.class));
+			if (selected.contains("forename")) {
+				projected.setForename(row.get("forename", String.class));
+			}
+			if (selected.contains("surname")) {
+				projected.setSurname(row.get("surname", String.class));
+			}
+			if (selected.contains("age")) {
+				projected.setAge(row.get("age", Integer.class));
+			}
+			users.add(projected);
+		}
+		return users;
+	}
+
+	private static Predicate[] searchFilters(CriteriaBuilder cb, Root<User> user, String surname,
+			String forenamePrefix, Integer minAge, Integer maxAge, Integer after) {
+		List<Predicate> where = new ArrayList<>();
+		if (surname != null) {
+			where.add(cb.equal(user.get("surname"), surname));
+		}
+		if (forenamePrefix != null) {
+			where.add(cb.like(user.get("forename"), escapeLike(forenamePrefix) + "%", LIKE_ESCAPE));
+		}
+		if (minAge != null) {
+			where.add(cb.greaterThanOrEqualTo(user.get("age"), minAge));
+		}
+		if (maxAge != null) {
+			where.add(cb.lessThanOrEqualTo(user.get("age"), maxAge));
+		}
+		if (after != null) {
+			where.add(cb.greaterThan(user.get("id"), after));
+		}
+		return where.toArray(new Predicate[0]);
+	}
+
+	private static String escapeLike(String value) {
+		StringBuilder escaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+				escaped.append(LIKE_ESCAPE);
+			}
+			escaped.append(c);
+		}
+		return escaped.toString();
+	}
+}
@@ -1,5 +1,8 @@
 package com.qa.user_app.execptions;
 
+import javax.validation.ConstraintViolationException;
+
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -13,4 +16,32 @@ public class ControllerExceptionHandler {
 		// Spring will automatically pass the UserNotFoundException to this method when it is thrown
 		return new ResponseEntity<String>(unfe.getMessage(), HttpStatus.NOT_FOUND);
 	}
+
+	@ExceptionHandler(value = { UserModifiedException.class })
+	public ResponseEntity<String> userModifiedExceptions(UserModifiedException ume) {
+		// the If-Match header of the request didn't match the current version of the user
+		return new ResponseEntity<String>(ume.getMessage(), HttpStatus.PRECONDITION_FAILED);
+	}
+
+	@ExceptionHandler(value = { UserBufferFullException.class })
+	public ResponseEntity<String> userBufferFullExceptions(UserBufferFullException ubfe) {
+		// the write-behind buffer is full, the client should back off and try again
+		HttpHeaders headers = new HttpHeaders();
+		headers.add(HttpHeaders.RETRY_AFTER, "1");
+		return new ResponseEntity<String>(ubfe.getMessage(), headers, HttpStatus.TOO_MANY_REQUESTS);
+	}
+
+	@ExceptionHandler(value = { UserDatabaseBusyException.class })
+	public ResponseEntity<String> userDatabaseBusyExceptions(UserDatabaseBusyException udbe) {
+		// the queue of the user database executor is full (see AsyncUserService), try again shortly
+		HttpHeaders headers = new HttpHeaders();
+		headers.add(HttpHeaders.RETRY_AFTER, "1");
+		return new ResponseEntity<String>(udbe.getMessage(), headers, HttpStatus.SERVICE_UNAVAILABLE);
+	}
+
+	@ExceptionHandler(value = { ConstraintViolationException.class })
+	public ResponseEntity<String> constraintViolationExceptions(ConstraintViolationException cve) {
+		// thrown when a constraint on a controller method parameter fails, e.g. an invalid user in a batch
+		return new ResponseEntity<String>(cve.getMessage(), HttpStatus.BAD_REQUEST);
+	}
 }
@@ -0,0 +1,16 @@
+package com.qa.user_app.execptions;
+
+// Thrown when the write-behind buffer has no room for another user (or is shutting down),
+// the client should retry later
+public class UserBufferFullException extends RuntimeException {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	public UserBufferFullException(String message) {
+		super(message);
+	}
+
+}
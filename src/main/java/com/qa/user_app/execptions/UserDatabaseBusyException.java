@@ -0,0 +1,20 @@
+package com.qa.user_app.execptions;
+
+import java.util.concurrent.RejectedExecutionException;
+
+// Thrown when the user database executor's queue is full (see AsyncUserService), the client
+// should retry shortly
+// - its own type so only that executor's rejections are answered as database saturation, not
+//   those of other executors
+public class UserDatabaseBusyException extends RuntimeException {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	public UserDatabaseBusyException(String message, RejectedExecutionException cause) {
+		super(message, cause);
+	}
+
+}
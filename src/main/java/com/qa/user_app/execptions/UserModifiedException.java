@@ -0,0 +1,22 @@
+package com.qa.user_app.execptions;
+
+import javax.persistence.OptimisticLockException;
+
+// Thrown when a conditional update or delete (If-Match) names a version of the user
+// that is no longer current
+public class UserModifiedException extends OptimisticLockException {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	public UserModifiedException() {
+		super();
+	}
+
+	public UserModifiedException(String message) {
+		super(message);
+	}
+
+}
@@ -6,6 +6,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 //@ResponseStatus(code = HttpStatus.NOT_FOUND, reason = "User with id not found")
+// A missing user is an expected outcome (it becomes a 404) rather than a bug, so this is cheap to throw
+// - no stack trace is captured, walking the stack is most of the cost of creating an exception
+// - when created from an id the message is only built if something asks for it
 public class UserNotFoundException extends EntityNotFoundException {
 
 	/**
@@ -13,12 +16,40 @@ public class UserNotFoundException extends EntityNotFoundException {
 	 */
 	private static final long serialVersionUID = 1L;
 
+	private final Integer id;
+
 	public UserNotFoundException() {
 		super();
+		this.id = null;
 	}
 
 	public UserNotFoundException(String message) {
 		super(message);
+		this.id = null;
+	}
+
+	public UserNotFoundException(Integer id) {
+		super();
+		this.id = id;
+	}
+
+	// the id of the user that doesn't exist, if known
+	public Integer getId() {
+		return id;
+	}
+
+	@Override
+	public String getMessage() {
+		String message = super.getMessage();
+		if (message == null && id != null) {
+			return "User with id " + id + " does not exist";
+		}
+		return message;
+	}
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
 	}
 
 }
\ No newline at end of file
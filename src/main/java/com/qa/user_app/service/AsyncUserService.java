@@ -0,0 +1,79 @@
+package com.qa.user_app.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.execptions.UserDatabaseBusyException;
+import com.qa.user_app.service.dto.UserPage;
+
+// UserService, with each call run on the user database executor rather than the caller's thread
+// (see ApplicationConfiguration.userDatabaseExecutor), for AsyncUserController
+// - a container thread hands the request over and goes back to serve others, while the database
+//   work waits for one of as many threads as there are connections
+// - when the executor's queue is full the call throws UserDatabaseBusyException straight away
+//   rather than returning a future, the controller answers it with a 503
+// - a UserService exception completes the future exceptionally (wrapped in a CompletionException,
+//   which Spring unwraps before the exception handlers see it)
+@Component
+public class AsyncUserService {
+
+	public static final String EXECUTOR = "userDatabaseExecutor";
+
+	private UserService userService;
+
+	private Executor executor;
+
+	@Autowired
+	public AsyncUserService(UserService userService, @Qualifier(EXECUTOR) Executor executor) {
+		this.userService = userService;
+		this.executor = executor;
+	}
+
+	public CompletableFuture<UserPage> getPage(Integer after, int limit, UserSort sort) {
+		return supply(() -> userService.getPage(after, limit, sort));
+	}
+
+	public CompletableFuture<UserPage> search(String surname, String forenamePrefix, Integer minAge,
+			Integer maxAge, Integer after, int limit) {
+		return supply(() -> userService.search(surname, forenamePrefix, minAge, maxAge, after, limit));
+	}
+
+	public CompletableFuture<User> getById(Integer id) {
+		return supply(() -> userService.getById(id));
+	}
+
+	public CompletableFuture<User> create(User user) {
+		return supply(() -> userService.create(user));
+	}
+
+	public CompletableFuture<User> update(Integer id, User user, Integer expectedVersion) {
+		return supply(() -> userService.update(id, user, expectedVersion));
+	}
+
+	public CompletableFuture<Void> delete(Integer id, Integer expectedVersion) {
+		try {
+			return CompletableFuture.runAsync(() -> userService.delete(id, expectedVersion), executor);
+		} catch (RejectedExecutionException ree) {
+			throw busy(ree);
+		}
+	}
+
+	private <T> CompletableFuture<T> supply(Supplier<T> call) {
+		try {
+			return CompletableFuture.supplyAsync(call, executor);
+		} catch (RejectedExecutionException ree) {
+			throw busy(ree);
+		}
+	}
+
+	private static UserDatabaseBusyException busy(RejectedExecutionException ree) {
+		return new UserDatabaseBusyException("Too many requests waiting for the database", ree);
+	}
+}
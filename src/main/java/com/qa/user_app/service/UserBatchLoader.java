@@ -0,0 +1,187 @@
+package com.qa.user_app.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.data.repository.UserRepository;
+
+// Coalesces concurrent lookups of users by id into batched IN queries (like a DataLoader)
+// - the first lookup of a batch starts a short window, every id asked for during that window
+//   is read with a single findAllById once it ends, or as soon as maxBatchSize ids are waiting
+// - lookups of an id that is already waiting or being read share its result (single flight)
+// - reads happen on the loader's own threads and connections, so they only see committed data
+// - each batch is read in a read-write transaction, so from the primary rather than a replica
+//   (see ReplicaRoutingDataSource): the users end up in the user cache, where a replica's
+//   lagging copy would be served, with its old ETag, until it expired
+@Component
+public class UserBatchLoader {
+
+	private UserRepository userRepository;
+
+	private TransactionTemplate transactionTemplate;
+
+	private long windowNanos;
+
+	private int maxBatchSize;
+
+	private ScheduledExecutorService executor;
+
+	// ids waiting for the current window to end, guarded by lock
+	private final Object lock = new Object();
+	private Map<Integer, CompletableFuture<Optional<User>>> pending = new HashMap<>();
+	private boolean shutdown;
+
+	// ids waiting or being read, so duplicate lookups can join them
+	private final ConcurrentMap<Integer, CompletableFuture<Optional<User>>> inFlight = new ConcurrentHashMap<>();
+
+	@Autowired
+	public UserBatchLoader(UserRepository userRepository, PlatformTransactionManager transactionManager,
+			@Value("${user.batch-loader.window:2ms}") Duration window,
+			@Value("${user.batch-loader.max-batch-size:100}") int maxBatchSize,
+			@Value("${user.batch-loader.threads:4}") int threads) {
+		this.userRepository = userRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.windowNanos = window.toNanos();
+		this.maxBatchSize = maxBatchSize;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-batch-loader-");
+		threadFactory.setDaemon(true);
+		this.executor = new ScheduledThreadPoolExecutor(threads, threadFactory);
+	}
+
+	// The user with the id, read as part of the next batch
+	public CompletableFuture<Optional<User>> load(Integer id) {
+		CompletableFuture<Optional<User>> user = inFlight.get(id);
+		if (user != null) {
+			return user;
+		}
+		synchronized (lock) {
+			user = inFlight.get(id);
+			if (user != null) {
+				return user;
+			}
+			user = new CompletableFuture<>();
+			if (shutdown) {
+				user.completeExceptionally(shutdownException());
+				return user;
+			}
+			inFlight.put(id, user);
+			pending.put(id, user);
+			if (pending.size() == 1) {
+				executor.schedule(this::dispatch, windowNanos, TimeUnit.NANOSECONDS);
+			} else if (pending.size() >= maxBatchSize) {
+				executor.execute(this::dispatch);
+			}
+		}
+		return user;
+	}
+
+	// Waits for the user with the id, rethrowing any failure reading it
+	public Optional<User> get(Integer id) {
+		try {
+			return load(id).join();
+		} catch (CompletionException e) {
+			throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+		}
+	}
+
+	// The users with the ids, in the order asked for, ids that don't exist are left out
+	public List<User> getAll(Collection<Integer> ids) {
+		List<CompletableFuture<Optional<User>>> futures = new ArrayList<>(ids.size());
+		for (Integer id : ids) {
+			futures.add(load(id));
+		}
+		List<User> users = new ArrayList<>(ids.size());
+		try {
+			for (CompletableFuture<Optional<User>> future : futures) {
+				future.join().ifPresent(users::add);
+			}
+		} catch (CompletionException e) {
+			throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+		}
+		return users;
+	}
+
+	// Reads every id waiting at this moment, maxBatchSize ids per query
+	private void dispatch() {
+		Map<Integer, CompletableFuture<Optional<User>>> batch;
+		synchronized (lock) {
+			if (pending.isEmpty()) {
+				return;
+			}
+			batch = pending;
+			pending = new HashMap<>();
+		}
+		List<Integer> ids = new ArrayList<>(batch.keySet());
+		for (int from = 0; from < ids.size(); from += maxBatchSize) {
+			List<Integer> chunk = ids.subList(from, Math.min(from + maxBatchSize, ids.size()));
+			try {
+				Map<Integer, User> found = new HashMap<>();
+				for (User user : transactionTemplate.execute(status -> userRepository.findAllById(chunk))) {
+					found.put(user.getId(), user);
+				}
+				for (Integer id : chunk) {
+					complete(id, batch.get(id), Optional.ofNullable(found.get(id)), null);
+				}
+			} catch (RuntimeException e) {
+				for (Integer id : chunk) {
+					complete(id, batch.get(id), null, e);
+				}
+			}
+		}
+	}
+
+	private void complete(Integer id, CompletableFuture<Optional<User>> future, Optional<User> user,
+			RuntimeException failure) {
+		// stop sharing this result before completing it, later lookups start a fresh read
+		inFlight.remove(id, future);
+		if (failure == null) {
+			future.complete(user);
+		} else {
+			future.completeExceptionally(failure);
+		}
+	}
+
+	// Stops reading users, every lookup still waiting fails rather than blocking its caller forever
+	// - the batch being read is interrupted, the batches still to come are never run
+	@PreDestroy
+	public void shutdown() {
+		synchronized (lock) {
+			shutdown = true;
+			pending = new HashMap<>();
+		}
+		executor.shutdownNow();
+		// pending ids are also in flight, so this fails them too
+		for (Integer id : inFlight.keySet()) {
+			CompletableFuture<Optional<User>> future = inFlight.remove(id);
+			if (future != null) {
+				future.completeExceptionally(shutdownException());
+			}
+		}
+	}
+
+	private static IllegalStateException shutdownException() {
+		return new IllegalStateException("The user batch loader has been shut down");
+	}
+}
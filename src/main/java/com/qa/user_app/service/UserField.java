@@ -0,0 +1,11 @@
+package com.qa.user_app.service;
+
+// The fields of a user that can be asked for with ?fields=, each is a User attribute
+// - id is always included, the cursor of the next page is an id
+public enum UserField {
+	ID, FORENAME, SURNAME, AGE;
+
+	public String getAttribute() {
+		return name().toLowerCase();
+	}
+}
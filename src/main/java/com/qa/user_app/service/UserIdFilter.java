@@ -0,0 +1,122 @@
+package com.qa.user_app.service;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.qa.user_app.data.repository.UserRepository;
+import com.qa.user_app.service.event.UserDeletedEvent;
+
+// Remembers which user ids exist so lookups of ids that definitely don't can skip the database
+// - one bit per id up to the highest id seen (ids come from a sequence so they are dense),
+//   about 12MB for 100 million ids
+// - ids above the highest id seen, and every id until the first rebuild has finished, are
+//   treated as possibly existing
+// - new users are added by UserIdListener as they are persisted, deleted users are removed
+//   once the delete commits
+// - it only sees writes made through this instance of the application: a user inserted by
+//   another instance or process gets an id from that writer's own block of the sequence, which
+//   can be below the highest id seen here, and is then answered with a 404 although it exists
+// - so it is off unless user.id-filter.enabled is set, which is only safe when this instance is
+//   the one writer of the user table (the dev profile)
+@Component
+public class UserIdFilter {
+
+	private UserRepository userRepository;
+
+	private TransactionTemplate transactionTemplate;
+
+	private boolean enabled;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	// guarded by lock
+	private final BitSet ids = new BitSet();
+	private int highestId = 0;
+	private boolean ready = false;
+
+	@Autowired
+	public UserIdFilter(UserRepository userRepository, PlatformTransactionManager transactionManager,
+			@Value("${user.id-filter.enabled:false}") boolean enabled) {
+		this.userRepository = userRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+		this.enabled = enabled;
+	}
+
+	// false only when there is definitely no user with this id
+	public boolean mightExist(Integer id) {
+		if (id == null || id <= 0) {
+			// never allocated by the sequence, so not tracked
+			return id != null;
+		}
+		lock.readLock().lock();
+		try {
+			return !ready || id > highestId || ids.get(id);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public void add(Integer id) {
+		if (id == null || id <= 0) {
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			ids.set(id);
+			highestId = Math.max(highestId, id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void userDeleted(UserDeletedEvent event) {
+		Integer id = event.getId();
+		if (id == null || id <= 0) {
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			ids.clear(id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Loads every id in the table, the filter only starts answering "doesn't exist" afterwards
+	// - ids are merged into the filter rather than replacing it, so users added or deleted while
+	//   the table is being read are never lost (at worst a deleted id is put back, which only
+	//   costs a database query)
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuild() {
+		if (!enabled) {
+			return;
+		}
+		BitSet loaded = transactionTemplate.execute(status -> {
+			BitSet found = new BitSet();
+			try (Stream<Integer> allIds = userRepository.streamAllIds()) {
+				allIds.filter(id -> id > 0).forEach(found::set);
+			}
+			return found;
+		});
+		lock.writeLock().lock();
+		try {
+			ids.or(loaded);
+			highestId = Math.max(highestId, loaded.length() - 1);
+			ready = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+}
@@ -0,0 +1,370 @@
+package com.qa.user_app.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.data.repository.UserRepository;
+import com.qa.user_app.service.event.UserDeletedEvent;
+import com.qa.user_app.service.event.UserSavedEvent;
+
+// In memory index of user names for typeahead (GET /user/suggest)
+// - every forename and surname, lower cased, is a key of a sorted map, so the names starting
+//   with a prefix are a sub map found in O(log n), however many users there are
+// - each name is also split into trigrams, a query that matches no name by prefix (a typo)
+//   is compared against the names sharing the most trigrams with it by edit distance, so a
+//   typo is only found if the query still shares a trigram with the name (e.g. its first two
+//   letters)
+// - loaded from the table once the application is ready, then kept current by the events
+//   UserService publishes once creates, updates and deletes commit
+// - reads take no locks, writes are serialised by writeLock, a read racing a write is
+//   checked against users so it never returns a user under a name they no longer have
+// - like UserIdFilter it only sees changes made through this instance of the application, users
+//   created, renamed or deleted by another instance are never picked up
+// - so it is off unless user.name-index.enabled is set, which is only safe when this instance is
+//   the one writer of the user table (the dev profile), otherwise UserService asks the database
+@Component
+public class UserNameIndex {
+
+	public static final int DEFAULT_SUGGESTIONS = 10;
+	public static final int MAX_SUGGESTIONS = 50;
+
+	// queries shorter than this are only matched by prefix, too few trigrams to be fuzzy
+	private static final int MIN_FUZZY_LENGTH = 3;
+	// names sharing the most trigrams with the query that are compared by edit distance
+	private static final int MAX_FUZZY_CANDIDATES = 200;
+
+	private UserRepository userRepository;
+
+	private EntityManager entityManager;
+
+	private TransactionTemplate transactionTemplate;
+
+	private boolean enabled;
+
+	// copies of the indexed users, with their normalised names, by id
+	private final ConcurrentMap<Integer, Indexed> users = new ConcurrentHashMap<>();
+	// lower cased name -> ids of the users with it as their forename or surname
+	private final ConcurrentSkipListMap<String, Set<Integer>> names = new ConcurrentSkipListMap<>();
+	// trigram -> names containing it
+	private final ConcurrentMap<String, Set<String>> trigrams = new ConcurrentHashMap<>();
+
+	private final Object writeLock = new Object();
+	// users deleted while the table is being loaded, so the load doesn't put them back
+	// - guarded by writeLock, null when no load is running
+	private Set<Integer> deletedWhileLoading;
+
+	@Autowired
+	public UserNameIndex(UserRepository userRepository, EntityManager entityManager,
+			PlatformTransactionManager transactionManager, @Value("${user.name-index.enabled:false}") boolean enabled) {
+		this.userRepository = userRepository;
+		this.entityManager = entityManager;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+		this.enabled = enabled;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	// Up to limit users with a forename or surname starting with each word of the query, in
+	// name order, followed by users whose names are within a small edit distance of it
+	public List<User> suggest(String query, int limit) {
+		String[] words = normalise(query).split(" ");
+		int max = Math.min(Math.max(limit, 1), MAX_SUGGESTIONS);
+		if (words[0].isEmpty()) {
+			return new ArrayList<>();
+		}
+		// the longest word is the most selective, the others are checked against each user found
+		String lookup = words[0];
+		for (String word : words) {
+			if (word.length() > lookup.length()) {
+				lookup = word;
+			}
+		}
+
+		Map<Integer, User> found = new LinkedHashMap<>();
+		NavigableMap<String, Set<Integer>> prefixed = names.subMap(lookup, true, lookup + Character.MAX_VALUE, false);
+		for (Map.Entry<String, Set<Integer>> name : prefixed.entrySet()) {
+			if (addMatches(name.getKey(), name.getValue(), lookup, words, found, max)) {
+				return new ArrayList<>(found.values());
+			}
+		}
+		if (lookup.length() >= MIN_FUZZY_LENGTH) {
+			for (String name : closestNames(lookup)) {
+				if (addMatches(name, names.get(name), lookup, words, found, max)) {
+					break;
+				}
+			}
+		}
+		return new ArrayList<>(found.values());
+	}
+
+	// adds the users with the name that match every other word, true once there are max users
+	private boolean addMatches(String name, Set<Integer> ids, String lookup, String[] words, Map<Integer, User> found,
+			int max) {
+		if (ids == null) {
+			return false;
+		}
+		for (Integer id : ids) {
+			Indexed user = users.get(id);
+			if (user != null && !found.containsKey(id) && user.hasName(name) && user.matchesOtherWords(lookup, words)) {
+				found.put(id, user.user);
+				if (found.size() >= max) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	// names whose start is within editDistanceLimit of the query (it may be a partly typed
+	// name), nearest first
+	private List<String> closestNames(String query) {
+		List<String> queryTrigrams = trigramsOf(query);
+		Map<String, int[]> shared = new HashMap<>();
+		for (String trigram : queryTrigrams) {
+			Set<String> containing = trigrams.get(trigram);
+			if (containing != null) {
+				for (String name : containing) {
+					shared.computeIfAbsent(name, n -> new int[1])[0]++;
+				}
+			}
+		}
+		// only the names sharing the most trigrams are compared, bucketed by how many they share
+		// (at most one per trigram of the query) rather than sorting them all
+		List<List<String>> byShared = new ArrayList<>(queryTrigrams.size() + 1);
+		for (int i = 0; i <= queryTrigrams.size(); i++) {
+			byShared.add(new ArrayList<>());
+		}
+		for (Map.Entry<String, int[]> name : shared.entrySet()) {
+			byShared.get(Math.min(name.getValue()[0], queryTrigrams.size())).add(name.getKey());
+		}
+		List<String> candidates = new ArrayList<>(MAX_FUZZY_CANDIDATES);
+		for (int count = queryTrigrams.size(); count > 0 && candidates.size() < MAX_FUZZY_CANDIDATES; count--) {
+			List<String> bucket = byShared.get(count);
+			candidates.addAll(bucket.subList(0, Math.min(bucket.size(), MAX_FUZZY_CANDIDATES - candidates.size())));
+		}
+
+		int maxDistance = editDistanceLimit(query);
+		Map<String, Integer> distances = new HashMap<>();
+		for (String candidate : candidates) {
+			int distance = prefixEditDistance(query, candidate, maxDistance);
+			if (distance <= maxDistance) {
+				distances.put(candidate, distance);
+			}
+		}
+		List<String> closest = new ArrayList<>(distances.keySet());
+		closest.sort(Comparator.<String>comparingInt(distances::get).thenComparing(Comparator.naturalOrder()));
+		return closest;
+	}
+
+	// one typo in a short name, two in a longer one
+	static int editDistanceLimit(String query) {
+		return query.length() <= 4 ? 1 : 2;
+	}
+
+	// Smallest Levenshtein distance between the query and the name or any start of it, or max + 1
+	// as soon as it is known to be more than max
+	// - the usual dynamic programme with the query down the side, the last row holds the
+	//   distance to each prefix of the name
+	static int prefixEditDistance(String query, String name, int max) {
+		int[] previous = new int[name.length() + 1];
+		int[] current = new int[name.length() + 1];
+		for (int j = 0; j <= name.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= query.length(); i++) {
+			current[0] = i;
+			int rowMin = current[0];
+			for (int j = 1; j <= name.length(); j++) {
+				int substitution = previous[j - 1] + (query.charAt(i - 1) == name.charAt(j - 1) ? 0 : 1);
+				current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+				rowMin = Math.min(rowMin, current[j]);
+			}
+			if (rowMin > max) {
+				return max + 1;
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		int distance = max + 1;
+		for (int j = 0; j <= name.length(); j++) {
+			distance = Math.min(distance, previous[j]);
+		}
+		return distance;
+	}
+
+	// the name padded with a leading space so the start of a name counts for more
+	static List<String> trigramsOf(String name) {
+		String padded = " " + name;
+		List<String> result = new ArrayList<>(Math.max(padded.length() - 2, 0));
+		for (int i = 0; i + 3 <= padded.length(); i++) {
+			result.add(padded.substring(i, i + 3));
+		}
+		return result;
+	}
+
+	static String normalise(String value) {
+		return value == null ? "" : value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void userSaved(UserSavedEvent event) {
+		if (!enabled) {
+			return;
+		}
+		put(event.getUser(), true);
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void userDeleted(UserDeletedEvent event) {
+		if (!enabled) {
+			return;
+		}
+		synchronized (writeLock) {
+			if (deletedWhileLoading != null) {
+				deletedWhileLoading.add(event.getId());
+			}
+			Indexed removed = users.remove(event.getId());
+			if (removed != null) {
+				removeName(removed.forename, event.getId());
+				removeName(removed.surname, event.getId());
+			}
+		}
+	}
+
+	// Loads every user in the table
+	// - users already indexed (saved since the load started) are left as they are, as the events
+	//   are at least as new as what is read, and deleted ones aren't put back
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuild() {
+		if (!enabled) {
+			return;
+		}
+		synchronized (writeLock) {
+			deletedWhileLoading = ConcurrentHashMap.newKeySet();
+		}
+		try {
+			transactionTemplate.executeWithoutResult(status -> {
+				try (Stream<User> all = userRepository.streamAll()) {
+					all.forEach(user -> {
+						put(new User(user.getId(), user.getForename(), user.getSurname(), user.getAge()), false);
+						entityManager.detach(user);
+					});
+				}
+			});
+		} finally {
+			synchronized (writeLock) {
+				deletedWhileLoading = null;
+			}
+		}
+	}
+
+	private void put(User user, boolean replace) {
+		synchronized (writeLock) {
+			if (!replace && (users.containsKey(user.getId())
+					|| (deletedWhileLoading != null && deletedWhileLoading.contains(user.getId())))) {
+				return;
+			}
+			Indexed indexed = new Indexed(user);
+			Indexed previous = users.put(user.getId(), indexed);
+			if (previous != null) {
+				if (previous.forename.equals(indexed.forename) && previous.surname.equals(indexed.surname)) {
+					// only the age changed
+					return;
+				}
+				removeName(previous.forename, user.getId());
+				removeName(previous.surname, user.getId());
+			}
+			addName(indexed.forename, user.getId());
+			addName(indexed.surname, user.getId());
+		}
+	}
+
+	// callers hold writeLock
+	private void addName(String name, Integer id) {
+		Set<Integer> ids = names.get(name);
+		if (ids == null) {
+			ids = ConcurrentHashMap.newKeySet();
+			names.put(name, ids);
+			for (String trigram : trigramsOf(name)) {
+				trigrams.computeIfAbsent(trigram, t -> ConcurrentHashMap.newKeySet()).add(name);
+			}
+		}
+		ids.add(id);
+	}
+
+	// callers hold writeLock
+	private void removeName(String name, Integer id) {
+		Set<Integer> ids = names.get(name);
+		if (ids == null) {
+			return;
+		}
+		ids.remove(id);
+		if (ids.isEmpty()) {
+			names.remove(name);
+			for (String trigram : trigramsOf(name)) {
+				Set<String> containing = trigrams.get(trigram);
+				if (containing != null) {
+					containing.remove(name);
+					if (containing.isEmpty()) {
+						trigrams.remove(trigram);
+					}
+				}
+			}
+		}
+	}
+
+	private static final class Indexed {
+
+		private final User user;
+		private final String forename;
+		private final String surname;
+
+		private Indexed(User user) {
+			this.user = user;
+			this.forename = normalise(user.getForename());
+			this.surname = normalise(user.getSurname());
+		}
+
+		private boolean hasName(String name) {
+			return forename.equals(name) || surname.equals(name);
+		}
+
+		// every word has to start the forename or surname, except the one the user was found by
+		private boolean matchesOtherWords(String lookup, String[] words) {
+			for (String word : words) {
+				// lookup is compared by reference, it is one of the words
+				if (word != lookup && !forename.startsWith(word) && !surname.startsWith(word)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
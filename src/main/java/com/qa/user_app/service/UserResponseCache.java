@@ -0,0 +1,173 @@
+package com.qa.user_app.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.qa.user_app.service.event.UserDeletedEvent;
+import com.qa.user_app.service.event.UserSavedEvent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Encoded responses (the JSON bytes and headers) of user reads, see UserResponseCacheFilter
+// - entries are never updated, instead every key includes a generation that changes whenever
+//   a user is written, so a response built before a write is simply never found again and
+//   ages out of the cache
+// - lists and searches share one generation, any write may change them
+// - a single user's response uses the generation of its stripe (its id modulo STRIPES), so a
+//   write only misses the responses of 1 in STRIPES users
+// - generations move on as soon as a user is written (by UserResponseCacheListener for JPA
+//   writes, or the events UserService publishes) and again once the transaction commits, so a
+//   response read in between can't outlive the write
+// - the user is evicted from UserService's users cache just before the generation moves on
+//   after the commit: UserService's own @CacheEvict only evicts once its transaction has ended,
+//   after this listener, and a read in between would otherwise find the old user there and
+//   cache its response under the new generation
+// - bounded by the total size of the bodies, user.response-cache.max-size
+// - responses read from a replica aren't kept, see UserResponseCacheFilter
+// - generations only move on for writes made through this instance, so it is off in the
+//   production profile, where other instances write to the same database and their writes
+//   would go unseen here until the ttl
+@Component
+public class UserResponseCache {
+
+	static final int STRIPES = 1024;
+
+	private boolean enabled;
+
+	private Cache<String, CachedResponse> responses;
+
+	private final AtomicLong listGeneration = new AtomicLong();
+
+	private final AtomicLongArray userGenerations = new AtomicLongArray(STRIPES);
+
+	private ObjectProvider<CacheManager> cacheManager;
+
+	@Autowired
+	public UserResponseCache(@Value("${user.response-cache.enabled:true}") boolean enabled,
+			@Value("${user.response-cache.max-size:64MB}") DataSize maxSize,
+			@Value("${user.response-cache.ttl:10m}") Duration ttl,
+			ObjectProvider<MeterRegistry> meterRegistry, ObjectProvider<CacheManager> cacheManager) {
+		this.enabled = enabled;
+		this.cacheManager = cacheManager;
+		this.responses = Caffeine.newBuilder()
+				.maximumWeight(maxSize.toBytes())
+				.weigher((String key, CachedResponse response) -> response.size())
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+		meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, responses, "userResponses"));
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public long listGeneration() {
+		return listGeneration.get();
+	}
+
+	public long userGeneration(int id) {
+		return userGenerations.get(Math.floorMod(id, STRIPES));
+	}
+
+	// null on a miss
+	public CachedResponse get(String key) {
+		return responses.getIfPresent(key);
+	}
+
+	public void put(String key, CachedResponse response) {
+		responses.put(key, response);
+	}
+
+	// every list and the user with this id (if not null) are read again
+	public void invalidate(Integer id) {
+		listGeneration.incrementAndGet();
+		if (id != null) {
+			userGenerations.incrementAndGet(Math.floorMod(id, STRIPES));
+		}
+	}
+
+	// invalidated when UserService publishes the write, and again once it commits
+	@EventListener
+	public void userSaved(UserSavedEvent event) {
+		invalidate(event.getUser().getId());
+	}
+
+	@TransactionalEventListener
+	public void userSavedCommitted(UserSavedEvent event) {
+		evictUser(event.getUser().getId());
+		invalidate(event.getUser().getId());
+	}
+
+	@EventListener
+	public void userDeleted(UserDeletedEvent event) {
+		invalidate(event.getId());
+	}
+
+	@TransactionalEventListener
+	public void userDeletedCommitted(UserDeletedEvent event) {
+		evictUser(event.getId());
+		invalidate(event.getId());
+	}
+
+	// evictIfPresent evicts at once, the transaction aware cache never defers it
+	private void evictUser(Integer id) {
+		if (id == null) {
+			return;
+		}
+		cacheManager.ifAvailable(manager -> {
+			org.springframework.cache.Cache users = manager.getCache(UserService.USER_CACHE);
+			if (users != null) {
+				users.evictIfPresent(id);
+			}
+		});
+	}
+
+	// An encoded response, optionally with a gzipped copy of its body
+	public static class CachedResponse {
+
+		private final byte[] body;
+
+		private final byte[] gzippedBody;
+
+		private final Map<String, List<String>> headers;
+
+		public CachedResponse(byte[] body, byte[] gzippedBody, Map<String, List<String>> headers) {
+			this.body = body;
+			this.gzippedBody = gzippedBody;
+			this.headers = headers;
+		}
+
+		public byte[] getBody() {
+			return body;
+		}
+
+		// null when the body wasn't worth compressing
+		public byte[] getGzippedBody() {
+			return gzippedBody;
+		}
+
+		public Map<String, List<String>> getHeaders() {
+			return headers;
+		}
+
+		int size() {
+			return body.length + (gzippedBody == null ? 0 : gzippedBody.length);
+		}
+	}
+}
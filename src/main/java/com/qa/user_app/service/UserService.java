@@ -1,16 +1,40 @@
 package com.qa.user_app.service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
-import javax.persistence.EntityNotFoundException;
+import javax.persistence.EntityManager;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.qa.user_app.data.entity.User;
 import com.qa.user_app.data.repository.UserRepository;
+import com.qa.user_app.execptions.UserModifiedException;
 import com.qa.user_app.execptions.UserNotFoundException;
+import com.qa.user_app.service.dto.UserPage;
+import com.qa.user_app.service.dto.UserWriteStatus;
+import com.qa.user_app.service.event.UserDeletedEvent;
+import com.qa.user_app.service.event.UserSavedEvent;
+
+import io.micrometer.core.annotation.Timed;
 
 //Need to register it as a class to Spring to annotate it as a bean
 // @Component
@@ -18,25 +42,208 @@ import com.qa.user_app.execptions.UserNotFoundException;
 @Service
 public class UserService {
 	
+	// name of the cache of users by id, see ApplicationConfiguration
+	public static final String USER_CACHE = "users";
+	
+	// timer of every public method, tagged with the method name (see ApplicationConfiguration.timedAspect)
+	// - p50/p95/p99 and histogram buckets are configured by management.metrics.distribution.*
+	public static final String TIMER = "user.service";
+	
+	public static final int DEFAULT_PAGE_SIZE = 50;
+	public static final int MAX_PAGE_SIZE = 500;
+	
+	// matches spring.jpa.properties.hibernate.jdbc.batch_size, the persistence context is
+	// flushed after this many new users so each flush is exactly one JDBC batch
+	public static final int INSERT_BATCH_SIZE = 50;
+	// most users accepted by a single POST /user/batch request
+	public static final int MAX_CREATE_ALL_SIZE = 1000;
+	
 	private UserRepository userRepository;
 	// importing data from UserRepo class
 	
+	private EntityManager entityManager;
+	
+	private UserBatchLoader userBatchLoader;
+	
+	// answers "no such user" for ids that definitely don't exist without a query
+	private UserIdFilter userIdFilter;
+	
+	// typeahead over forenames and surnames, kept current by the events published below
+	private UserNameIndex userNameIndex;
+	
+	private ApplicationEventPublisher eventPublisher;
+	
+	// queues new users for batched inserts when user.write-behind.enabled is set
+	private UserWriteBehindBuffer writeBehindBuffer;
 	
 	@Autowired // dependency injection by using the constructor
-	public UserService(UserRepository userRepository) {
+	public UserService(UserRepository userRepository, EntityManager entityManager, UserBatchLoader userBatchLoader,
+			UserIdFilter userIdFilter, UserNameIndex userNameIndex, ApplicationEventPublisher eventPublisher,
+			UserWriteBehindBuffer writeBehindBuffer) {
 		this.userRepository = userRepository;
+		this.entityManager = entityManager;
+		this.userBatchLoader = userBatchLoader;
+		this.userIdFilter = userIdFilter;
+		this.userNameIndex = userNameIndex;
+		this.eventPublisher = eventPublisher;
+		this.writeBehindBuffer = writeBehindBuffer;
 	}
 
+	// Reads
+	// - in read only transactions, hibernate doesn't flush them and loads their users read only,
+	//   keeping no snapshot for dirty checking
+	// - except getById and getByIds, which only go through the batch loader outside a transaction
+
+	@Transactional(readOnly = true)
+	@Timed(TIMER)
 	public List<User> getAll(){
 		return userRepository.findAll();
 	}
 	
+	// The users with the given ids, in the order asked for, ids that don't exist are left out
+	@Timed(TIMER)
+	public List<User> getByIds(Collection<Integer> ids) {
+		Set<Integer> uniqueIds = new LinkedHashSet<>(ids);
+		uniqueIds.removeIf(id -> !userIdFilter.mightExist(id));
+		if (uniqueIds.isEmpty()) {
+			return new ArrayList<>();
+		}
+		if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+			return userBatchLoader.getAll(uniqueIds);
+		}
+		Map<Integer, User> found = new HashMap<>();
+		for (User user : userRepository.findAllById(uniqueIds)) {
+			found.put(user.getId(), user);
+		}
+		List<User> users = new ArrayList<>(uniqueIds.size());
+		for (Integer id : uniqueIds) {
+			if (found.containsKey(id)) {
+				users.add(found.get(id));
+			}
+		}
+		return users;
+	}
+	
+	// Passes every user to the action one at a time, in id order
+	// - rows are streamed from the database and detached once handled so memory stays
+	//   constant however big the table is
+	@Transactional(readOnly = true)
+	@Timed(TIMER)
+	public void forEach(Consumer<User> action) {
+		try (Stream<User> users = userRepository.streamAll()) {
+			users.forEach(user -> {
+				action.accept(user);
+				entityManager.detach(user);
+			});
+		}
+	}
+	
+	// Returns at most limit users that come after the user with id "after" in the given order
+	// - after is the nextCursor of the previous page, or null for the first page
+	@Transactional(readOnly = true)
+	@Timed(TIMER)
+	public UserPage getPage(Integer after, int limit, UserSort sort) {
+		int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+		// fetch one extra row so we know whether there is a next page without a count query
+		Pageable pageable = PageRequest.of(0, pageSize + 1);
+		
+		// for surname and age the sort key of the cursor row is looked up by its primary key
+		// - a 404 is returned if that user has been deleted since the previous page was read
+		List<User> users;
+		switch (sort) {
+		case SURNAME:
+			users = after == null ? userRepository.findAllByOrderBySurnameAscIdAsc(pageable)
+					: userRepository.findPageAfterSurname(getById(after).getSurname(), after, pageable);
+			break;
+		case AGE:
+			users = after == null ? userRepository.findAllByOrderByAgeAscIdAsc(pageable)
+					: userRepository.findPageAfterAge(getById(after).getAge(), after, pageable);
+			break;
+		default:
+			users = userRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0 : after, pageable);
+		}
+		
+		return toPage(users, pageSize);
+	}
+	
+	// getPage, only reading the given fields of each user (and its id and version)
+	// - the users are new, unmanaged objects with the other fields left null
+	@Transactional(readOnly = true)
+	@Timed(TIMER)
+	public UserPage getPage(Integer after, int limit, UserSort sort, Set<UserField> fields) {
+		int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+		Object afterKey = null;
+		if (after != null && sort != UserSort.ID) {
+			User cursor = getById(after);
+			afterKey = sort == UserSort.SURNAME ? cursor.getSurname() : cursor.getAge();
+		}
+		List<User> users = userRepository.findPage(attributes(fields), sort.getAttribute(), afterKey, after,
+				pageSize + 1);
+		return toPage(users, pageSize);
+	}
+	
+	// Returns at most limit users matching every filter that isn't null, in id order, after the
+	// user with id "after" (the nextCursor of the previous page)
+	// - surname must match exactly, forename only has to start with forenamePrefix
+	// - minAge and maxAge are inclusive
+	@Transactional(readOnly = true)
+	@Timed(TIMER)
+	public UserPage search(String surname, String forenamePrefix, Integer minAge, Integer maxAge, Integer after,
+			int limit) {
+		int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+		// one extra row again, to know whether there is a next page
+		List<User> users = userRepository.search(surname, forenamePrefix, minAge, maxAge, after, pageSize + 1);
+		return toPage(users, pageSize);
+	}
+	
+	// search, only reading the given fields of each user (and its id and version)
+	@Transactional(readOnly = true)
+	@Timed(TIMER)
+	public UserPage search(String surname, String forenamePrefix, Integer minAge, Integer maxAge, Integer after,
+			int limit, Set<UserField> fields) {
+		int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+		List<User> users = userRepository.search(attributes(fields), surname, forenamePrefix, minAge, maxAge, after,
+				pageSize + 1);
+		return toPage(users, pageSize);
+	}
+	
+	private static List<String> attributes(Set<UserField> fields) {
+		List<String> attributes = new ArrayList<>(fields.size());
+		for (UserField field : fields) {
+			attributes.add(field.getAttribute());
+		}
+		return attributes;
+	}
+	
+	// users holds up to one more row than pageSize, which is only there to show a next page exists
+	private static UserPage toPage(List<User> users, int pageSize) {
+		if (users.size() <= pageSize) {
+			return new UserPage(users, null);
+		}
+		List<User> page = new ArrayList<>(users.subList(0, pageSize));
+		return new UserPage(page, page.get(pageSize - 1).getId());
+	}
+	
 
+	// read through the cache, only a miss goes to the database
+	@Cacheable(cacheNames = USER_CACHE, key = "#id")
+	@Timed(TIMER)
 	public User getById(Integer id) {
 //		return userRepository.findById(id).orElseThrow(EntityNotFoundException::new);
 		
-		return userRepository.findById(id).orElseThrow(() -> {
-			return new UserNotFoundException("User with id " + id + " does not exist");
+		if (!userIdFilter.mightExist(id)) {
+			throw new UserNotFoundException(id);
+		}
+		// concurrent lookups are coalesced into one IN query by the batch loader, unless we are
+		// inside a transaction that can write, which must be able to see its own uncommitted writes
+		// - a read only transaction would read a replica (see ReplicaRoutingDataSource), whose
+		//   lagging copy mustn't be cached, the batch loader reads the primary instead
+		Optional<User> user = TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+				? userRepository.findById(id)
+				: userBatchLoader.get(id);
+		return user.orElseThrow(() -> {
+			return new UserNotFoundException(id);
 		});
 		
 //		if (userRepository.existsById(id)) {
@@ -45,35 +252,132 @@ public class UserService {
 //		throw new EntityNotFoundException("User with id " + id + " does not exist.");
 	}
 	
+	// Up to limit users whose forename or surname starts with each word of the query, then
+	// users with names a typo away from it, answered from memory by the UserNameIndex
+	// - when the index is off (other instances write too) the database is asked instead, which
+	//   only finds names by prefix
+	@Transactional(readOnly = true)
+	@Timed(TIMER)
+	public List<User> suggest(String query, int limit) {
+		if (userNameIndex.isEnabled()) {
+			return userNameIndex.suggest(query, limit);
+		}
+		String normalised = UserNameIndex.normalise(query);
+		if (normalised.isEmpty()) {
+			return new ArrayList<>();
+		}
+		int max = Math.min(Math.max(limit, 1), UserNameIndex.MAX_SUGGESTIONS);
+		return userRepository.suggest(Arrays.asList(normalised.split(" ")), max);
+	}
+	
+	@Timed(TIMER)
 	public User create(User user) {
 		User savedUser = userRepository.save(user);
+		eventPublisher.publishEvent(new UserSavedEvent(savedUser));
 		return savedUser;
 	}
 	
-	public User update(Integer id, User user) {
-		// repository.save() will overwrite entities that already exist in the db
-		// 1. Check if user exists
-		if (userRepository.existsById(id)) {
-			// 2. get user is db
-			User updatedUser = userRepository.getById(id);
-			// 3. update with user fields
-			updatedUser.setAge(user.getAge());
-			updatedUser.setForename(user.getForename());
-			updatedUser.setSurname(user.getSurname());
-			return userRepository.save(updatedUser);
-		}else {
-			throw new EntityNotFoundException("User with id " + id + " does not exist.");
+	// Write-behind creation, see UserWriteBehindBuffer
+	// - enqueue returns a tracking id straight away, the user is inserted later as part of a batch
+	// - throws UserBufferFullException when too many users are already waiting
+	public boolean isWriteBehind() {
+		return writeBehindBuffer.isEnabled();
+	}
+	
+	@Timed(TIMER)
+	public String enqueue(User user) {
+		return writeBehindBuffer.submit(user);
+	}
+	
+	public UserWriteStatus getWriteStatus(String trackingId) {
+		UserWriteStatus status = writeBehindBuffer.getStatus(trackingId);
+		if (status == null) {
+			throw new UserNotFoundException("No user is waiting to be created with tracking id " + trackingId);
 		}
-		
+		return status;
 	}
 	
-	public void delete(Integer id) {
-		if (userRepository.existsById(id)) {
-			userRepository.deleteById(id);
-		} else {
-			throw new EntityNotFoundException("User with id " + id + " does not exist.");
+	// Saves all the users in a single transaction using batched INSERTs
+	// - flushed every INSERT_BATCH_SIZE users, after which they are detached so the
+	//   persistence context doesn't grow with the size of the list
+	@Transactional
+	@Timed(TIMER)
+	public List<User> createAll(List<User> users) {
+		List<User> savedUsers = new ArrayList<>(users.size());
+		for (User user : users) {
+			savedUsers.add(userRepository.save(user));
+			if (savedUsers.size() % INSERT_BATCH_SIZE == 0) {
+				flushAndDetach(savedUsers.subList(savedUsers.size() - INSERT_BATCH_SIZE, savedUsers.size()));
+			}
 		}
-
+		flushAndDetach(savedUsers.subList(savedUsers.size() - savedUsers.size() % INSERT_BATCH_SIZE, savedUsers.size()));
+		// handled once the transaction commits
+		for (User savedUser : savedUsers) {
+			eventPublisher.publishEvent(new UserSavedEvent(savedUser));
+		}
+		return savedUsers;
+	}
+	
+	private void flushAndDetach(List<User> users) {
+		if (users.isEmpty()) {
+			return;
+		}
+		userRepository.flush();
+		users.forEach(entityManager::detach);
+	}
+	
+	// Updates the user, but only if it is still at expectedVersion when that isn't null
+	// (a null expectedVersion updates whatever version is current)
+	// - the cached user is evicted once the transaction commits, the next read reloads it
+	// - the returned user's version is only known (expectedVersion + 1) for a conditional update,
+	//   reading it back would cost a second statement, so an unconditional update has no ETag
+	@Transactional
+	@CacheEvict(cacheNames = USER_CACHE, key = "#id")
+	@Timed(TIMER)
+	public User update(Integer id, User user, Integer expectedVersion) {
+		if (!userIdFilter.mightExist(id)) {
+			throw new UserNotFoundException(id);
+		}
+		// a single UPDATE, no rows updated means the user doesn't exist (or has changed)
+		int updated = expectedVersion == null
+				? userRepository.updateById(id, user.getForename(), user.getSurname(), user.getAge())
+				: userRepository.updateByIdAndVersion(id, expectedVersion, user.getForename(), user.getSurname(),
+						user.getAge());
+		if (updated == 0) {
+			throw notFoundOrModified(id, expectedVersion);
+		}
+		User updatedUser = new User(id, user.getForename(), user.getSurname(), user.getAge());
+		updatedUser.setVersion(expectedVersion == null ? null : expectedVersion + 1);
+		eventPublisher.publishEvent(new UserSavedEvent(updatedUser));
+		return updatedUser;
+	}
+	
+	// Deletes the user, but only if it is still at expectedVersion when that isn't null
+	// (a null expectedVersion deletes whatever version is current)
+	@Transactional
+	@CacheEvict(cacheNames = USER_CACHE, key = "#id")
+	@Timed(TIMER)
+	public void delete(Integer id, Integer expectedVersion) {
+		if (!userIdFilter.mightExist(id)) {
+			throw new UserNotFoundException(id);
+		}
+		// a single DELETE, no rows deleted means the user doesn't exist (or has changed)
+		int deleted = expectedVersion == null ? userRepository.deleteUserById(id)
+				: userRepository.deleteUserByIdAndVersion(id, expectedVersion);
+		if (deleted == 0) {
+			throw notFoundOrModified(id, expectedVersion);
+		}
+		// the id filter and name index forget the user once this commits
+		eventPublisher.publishEvent(new UserDeletedEvent(id));
+	}
+	
+	// works out why a write affected no rows
+	// - the extra existence check only happens on this (failure) path
+	private RuntimeException notFoundOrModified(Integer id, Integer expectedVersion) {
+		if (expectedVersion != null && userRepository.existsById(id)) {
+			return new UserModifiedException("User with id " + id + " is no longer at version " + expectedVersion);
+		}
+		return new UserNotFoundException(id);
 	}
 	
 }
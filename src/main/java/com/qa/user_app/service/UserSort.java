@@ -0,0 +1,12 @@
+package com.qa.user_app.service;
+
+// The columns a page of users can be ordered by
+// - every ordering is tie-broken on id so the keyset cursor is always unique
+public enum UserSort {
+	ID, SURNAME, AGE;
+
+	// the User attribute ordered by
+	public String getAttribute() {
+		return name().toLowerCase();
+	}
+}
@@ -0,0 +1,228 @@
+package com.qa.user_app.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.execptions.UserBufferFullException;
+import com.qa.user_app.service.dto.UserWriteStatus;
+
+// Write-behind creation of users, only used when user.write-behind.enabled is set
+// - new users wait in a bounded queue and a single writer thread inserts them with
+//   UserService.createAll, batchSize at a time, or whatever has arrived flushInterval after
+//   the first user of a batch, so inserts cost one JDBC batch rather than one round trip each
+// - when the queue is full submit fails straight away (a 429) rather than blocking the request
+// - a batch that fails is retried one user at a time, so one bad user only fails itself
+// - each user gets a tracking id, its status is kept for statusTtl after it is last updated
+// - on shutdown no more users are accepted and everything already queued is written before
+//   the database is closed (the web server stops first, see getPhase)
+@Component
+public class UserWriteBehindBuffer implements SmartLifecycle {
+
+	// longest the writer waits for users before checking whether it has been stopped
+	private static final long STOP_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private UserService userService;
+
+	private boolean enabled;
+
+	private int batchSize;
+
+	private long flushIntervalNanos;
+
+	private BlockingQueue<Pending> queue;
+
+	private Cache<String, UserWriteStatus> statuses;
+
+	private Thread writer;
+
+	private volatile boolean running = false;
+
+	@Autowired
+	public UserWriteBehindBuffer(@Lazy UserService userService,
+			@Value("${user.write-behind.enabled:false}") boolean enabled,
+			@Value("${user.write-behind.capacity:10000}") int capacity,
+			@Value("${user.write-behind.batch-size:" + UserService.INSERT_BATCH_SIZE + "}") int batchSize,
+			@Value("${user.write-behind.flush-interval:20ms}") Duration flushInterval,
+			@Value("${user.write-behind.status-ttl:10m}") Duration statusTtl) {
+		this.userService = userService;
+		this.enabled = enabled;
+		this.batchSize = batchSize;
+		this.flushIntervalNanos = flushInterval.toNanos();
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.statuses = Caffeine.newBuilder().expireAfterWrite(statusTtl).build();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	// Queues the user to be created, returning the tracking id of its status
+	public String submit(User user) {
+		if (!running) {
+			throw new UserBufferFullException("Not accepting new users, shutting down");
+		}
+		String trackingId = UUID.randomUUID().toString();
+		statuses.put(trackingId, UserWriteStatus.pending(trackingId));
+		if (!queue.offer(new Pending(trackingId, user))) {
+			statuses.invalidate(trackingId);
+			throw new UserBufferFullException("Too many users waiting to be created, try again later");
+		}
+		return trackingId;
+	}
+
+	// null when the tracking id is unknown or its status has expired
+	public UserWriteStatus getStatus(String trackingId) {
+		return statuses.getIfPresent(trackingId);
+	}
+
+	// number of users waiting to be written
+	public int size() {
+		return queue.size();
+	}
+
+	@Override
+	public void start() {
+		if (!enabled || running) {
+			return;
+		}
+		running = true;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-write-behind-");
+		writer = threadFactory.newThread(this::writeUntilStopped);
+		writer.start();
+	}
+
+	// Stops accepting users and waits for the writer to empty the queue
+	@Override
+	public void stop() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// a submit that raced with the stop, written here as the writer has finished
+		Pending pending;
+		while ((pending = queue.poll()) != null) {
+			writeOne(pending);
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	// stopped after the web server (which stops at a higher phase), so no request can queue a
+	// user once the last batch has been written, and before the database is closed
+	@Override
+	public int getPhase() {
+		return 0;
+	}
+
+	private void writeUntilStopped() {
+		List<Pending> batch = new ArrayList<>(batchSize);
+		while (running || !queue.isEmpty()) {
+			try {
+				fill(batch);
+			} catch (InterruptedException e) {
+				// keep going until the queue is empty, stop() waits for that
+				continue;
+			}
+			if (!batch.isEmpty()) {
+				write(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	// Waits for the first user, then up to flushInterval for the rest of the batch
+	// - never waits more than STOP_CHECK_NANOS at a time, so a stop is noticed
+	private void fill(List<Pending> batch) throws InterruptedException {
+		Pending first = queue.poll(Math.min(flushIntervalNanos, STOP_CHECK_NANOS), TimeUnit.NANOSECONDS);
+		if (first == null) {
+			return;
+		}
+		batch.add(first);
+		long deadline = System.nanoTime() + flushIntervalNanos;
+		while (batch.size() < batchSize) {
+			// take whatever is already waiting without blocking
+			if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+				continue;
+			}
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0 || !running) {
+				return;
+			}
+			Pending next = queue.poll(Math.min(remaining, STOP_CHECK_NANOS), TimeUnit.NANOSECONDS);
+			if (next != null) {
+				batch.add(next);
+			}
+		}
+	}
+
+	private void write(List<Pending> batch) {
+		List<User> users = new ArrayList<>(batch.size());
+		for (Pending pending : batch) {
+			users.add(copyOf(pending.user));
+		}
+		List<User> savedUsers;
+		try {
+			savedUsers = userService.createAll(users);
+		} catch (RuntimeException e) {
+			// the whole batch was rolled back, find out which users were the problem
+			for (Pending pending : batch) {
+				writeOne(pending);
+			}
+			return;
+		}
+		for (int i = 0; i < batch.size(); i++) {
+			String trackingId = batch.get(i).trackingId;
+			statuses.put(trackingId, UserWriteStatus.created(trackingId, savedUsers.get(i).getId()));
+		}
+	}
+
+	private void writeOne(Pending pending) {
+		try {
+			User savedUser = userService.create(copyOf(pending.user));
+			statuses.put(pending.trackingId, UserWriteStatus.created(pending.trackingId, savedUser.getId()));
+		} catch (RuntimeException e) {
+			statuses.put(pending.trackingId, UserWriteStatus.failed(pending.trackingId, "User could not be created"));
+		}
+	}
+
+	// saving assigns the user an id even if the transaction then rolls back, so each attempt
+	// saves a fresh copy
+	private static User copyOf(User user) {
+		return new User(user.getForename(), user.getSurname(), user.getAge());
+	}
+
+	private static class Pending {
+
+		private final String trackingId;
+
+		private final User user;
+
+		private Pending(String trackingId, User user) {
+			this.trackingId = trackingId;
+			this.user = user;
+		}
+	}
+}
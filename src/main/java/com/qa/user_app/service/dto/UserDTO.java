@@ -12,6 +12,18 @@ public class UserDTO {
 
 	private int age;
 
+	public UserDTO() {
+		super();
+	}
+
+	public UserDTO(long id, String forename, String surname, int age) {
+		super();
+		this.id = id;
+		this.forename = forename;
+		this.surname = surname;
+		this.age = age;
+	}
+
 	public long getId() {
 		return id;
 	}
@@ -62,4 +74,9 @@ public class UserDTO {
 				&& Objects.equals(surname, other.surname);
 	}
 
+	@Override
+	public String toString() {
+		return "UserDTO [id=" + id + ", forename=" + forename + ", surname=" + surname + ", age=" + age + "]";
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.qa.user_app.service.dto;
+
+import java.util.List;
+import java.util.Objects;
+
+import com.qa.user_app.data.entity.User;
+
+// A single page of users along with the cursor used to request the next one
+// - nextCursor is the id of the last user on this page, or null on the last page
+public class UserPage {
+
+	private List<User> users;
+
+	private Integer nextCursor;
+
+	public UserPage(List<User> users, Integer nextCursor) {
+		super();
+		this.users = users;
+		this.nextCursor = nextCursor;
+	}
+
+	public List<User> getUsers() {
+		return users;
+	}
+
+	public Integer getNextCursor() {
+		return nextCursor;
+	}
+
+	public boolean hasNext() {
+		return nextCursor != null;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(nextCursor, users);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		UserPage other = (UserPage) obj;
+		return Objects.equals(nextCursor, other.nextCursor) && Objects.equals(users, other.users);
+	}
+
+}
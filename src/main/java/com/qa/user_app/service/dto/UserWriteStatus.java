@@ -0,0 +1,81 @@
+package com.qa.user_app.service.dto;
+
+import java.util.Objects;
+
+// Where a user queued by the write-behind buffer has got to
+// - userId is only set once the user has been created, error only once it has failed
+public class UserWriteStatus {
+
+	public enum State {
+		PENDING, CREATED, FAILED
+	}
+
+	private String trackingId;
+
+	private State state;
+
+	private Integer userId;
+
+	private String error;
+
+	public UserWriteStatus(String trackingId, State state, Integer userId, String error) {
+		super();
+		this.trackingId = trackingId;
+		this.state = state;
+		this.userId = userId;
+		this.error = error;
+	}
+
+	public static UserWriteStatus pending(String trackingId) {
+		return new UserWriteStatus(trackingId, State.PENDING, null, null);
+	}
+
+	public static UserWriteStatus created(String trackingId, Integer userId) {
+		return new UserWriteStatus(trackingId, State.CREATED, userId, null);
+	}
+
+	public static UserWriteStatus failed(String trackingId, String error) {
+		return new UserWriteStatus(trackingId, State.FAILED, null, error);
+	}
+
+	public String getTrackingId() {
+		return trackingId;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public Integer getUserId() {
+		return userId;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(error, state, trackingId, userId);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		UserWriteStatus other = (UserWriteStatus) obj;
+		return Objects.equals(error, other.error) && state == other.state
+				&& Objects.equals(trackingId, other.trackingId) && Objects.equals(userId, other.userId);
+	}
+
+	@Override
+	public String toString() {
+		return "UserWriteStatus [trackingId=" + trackingId + ", state=" + state + ", userId=" + userId + ", error="
+				+ error + "]";
+	}
+
+}
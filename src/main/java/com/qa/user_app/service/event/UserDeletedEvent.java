@@ -0,0 +1,40 @@
+package com.qa.user_app.service.event;
+
+import java.util.Objects;
+
+// Published by UserService when a user is deleted, listeners that only care about committed
+// deletes should use @TransactionalEventListener
+public class UserDeletedEvent {
+
+	private final Integer id;
+
+	public UserDeletedEvent(Integer id) {
+		this.id = id;
+	}
+
+	public Integer getId() {
+		return id;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(id);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		UserDeletedEvent other = (UserDeletedEvent) obj;
+		return Objects.equals(id, other.id);
+	}
+
+	@Override
+	public String toString() {
+		return "UserDeletedEvent [id=" + id + "]";
+	}
+}
@@ -0,0 +1,43 @@
+package com.qa.user_app.service.event;
+
+import java.util.Objects;
+
+import com.qa.user_app.data.entity.User;
+
+// Published by UserService when a user is created or updated, listeners that only care about
+// committed changes should use @TransactionalEventListener
+// - the user is a copy made when the event was published, never a managed entity
+public class UserSavedEvent {
+
+	private final User user;
+
+	public UserSavedEvent(User user) {
+		this.user = new User(user.getId(), user.getForename(), user.getSurname(), user.getAge());
+	}
+
+	public User getUser() {
+		return user;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(user);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		UserSavedEvent other = (UserSavedEvent) obj;
+		return Objects.equals(user, other.user);
+	}
+
+	@Override
+	public String toString() {
+		return "UserSavedEvent [user=" + user + "]";
+	}
+}
@@ -0,0 +1,74 @@
+-- MySQL schema for the production profile
+-- - not run automatically (spring.sql.init.mode=never), apply it by hand when provisioning the database
+-- - safe to run again, and it migrates a database made by the original schema: there the user table
+--   already exists, with AUTO_INCREMENT (IDENTITY) ids and no version column, and
+--   CREATE TABLE IF NOT EXISTS leaves it as it is, so the changes are made by the statements after it
+
+CREATE TABLE IF NOT EXISTS `user` (
+	`id` INT NOT NULL,
+    `forename` VARCHAR(255) NOT NULL,
+    `surname` VARCHAR(255) NOT NULL,
+    `age` INT NOT NULL,
+    -- optimistic locking version, see User.version
+    `version` INT NOT NULL DEFAULT 0,
+    PRIMARY KEY(`id`),
+    -- indexes backing the keyset pagination of GET /user?sort=
+    INDEX `idx_user_surname_id` (`surname`, `id`),
+    INDEX `idx_user_age_id` (`age`, `id`),
+    -- indexes backing GET /user/search, see UserSearchRepositoryImpl
+    INDEX `idx_user_forename_id` (`forename`, `id`),
+    INDEX `idx_user_surname_forename_id` (`surname`, `forename`, `id`),
+    CHECK(`forename` <> ''),
+    CHECK(`surname` <> ''),
+    CHECK(`age` >= 18),
+    CHECK(`age` <= 130)
+) ENGINE = InnoDB;
+
+-- ids come from user_seq now, the database no longer generates them
+ALTER TABLE `user` MODIFY `id` INT NOT NULL;
+
+-- MySQL has no ADD COLUMN/INDEX IF NOT EXISTS, so each one is only run when information_schema
+--   doesn't have it yet
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE()
+		AND TABLE_NAME = 'user' AND COLUMN_NAME = 'version') = 0,
+	'ALTER TABLE `user` ADD COLUMN `version` INT NOT NULL DEFAULT 0', 'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE()
+		AND TABLE_NAME = 'user' AND INDEX_NAME = 'idx_user_surname_id') = 0,
+	'CREATE INDEX `idx_user_surname_id` ON `user` (`surname`, `id`)', 'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE()
+		AND TABLE_NAME = 'user' AND INDEX_NAME = 'idx_user_age_id') = 0,
+	'CREATE INDEX `idx_user_age_id` ON `user` (`age`, `id`)', 'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE()
+		AND TABLE_NAME = 'user' AND INDEX_NAME = 'idx_user_forename_id') = 0,
+	'CREATE INDEX `idx_user_forename_id` ON `user` (`forename`, `id`)', 'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE()
+		AND TABLE_NAME = 'user' AND INDEX_NAME = 'idx_user_surname_forename_id') = 0,
+	'CREATE INDEX `idx_user_surname_forename_id` ON `user` (`surname`, `forename`, `id`)', 'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+
+DEALLOCATE PREPARE ddl;
+
+-- MySQL has no sequences, hibernate emulates user_seq with a single row table
+-- - ids are allocated in blocks of 50 (see User.id)
+-- - the pooled optimizer takes the value it reads as the top of its block, so reading n hands out
+--   n - 49 to n: the row is seeded 50 above the highest existing id so the first block starts
+--   after it
+CREATE TABLE IF NOT EXISTS `user_seq` (
+	`next_val` BIGINT
+) ENGINE = InnoDB;
+INSERT INTO `user_seq` (`next_val`)
+	SELECT `seed`.`next_val` FROM (SELECT COALESCE(MAX(`id`), 0) + 50 AS `next_val` FROM `user`) AS `seed`
+	WHERE NOT EXISTS (SELECT * FROM `user_seq`);
@@ -1,15 +1,32 @@
 -- drop for testing so any new app contexts that are spawned will be fresh
 DROP TABLE IF EXISTS `user`;
+DROP SEQUENCE IF EXISTS `user_seq`;
+
+-- ids are allocated by hibernate in blocks of 50 (see User.id)
+CREATE SEQUENCE `user_seq` START WITH 1 INCREMENT BY 50;
 
 CREATE TABLE `user` (
-	`id` INT AUTO_INCREMENT,
+	`id` INT NOT NULL,
     `forename` VARCHAR(255) NOT NULL,
     `surname` VARCHAR(255) NOT NULL,
     `age` INT NOT NULL,
+    -- optimistic locking version, see User.version
+    `version` INT NOT NULL DEFAULT 0,
     PRIMARY KEY(`id`),
     -- <> is not equal to
     CHECK(`forename` <> ''),
     CHECK(`surname` <> ''),
     CHECK(`age` >= 18),
     CHECK(`age` <= 130)
-);
\ No newline at end of file
+);
+
+-- indexes backing the keyset pagination of GET /user?sort=
+-- - id is included so the (key, id) cursor comparison is a single index range scan
+CREATE INDEX `idx_user_surname_id` ON `user` (`surname`, `id`);
+CREATE INDEX `idx_user_age_id` ON `user` (`age`, `id`);
+
+-- indexes backing GET /user/search, see UserSearchRepositoryImpl
+-- - surname alone uses idx_user_surname_id above, age ranges idx_user_age_id
+-- - a forename prefix is a range scan of the forename column, after the surname when both are given
+CREATE INDEX `idx_user_forename_id` ON `user` (`forename`, `id`);
+CREATE INDEX `idx_user_surname_forename_id` ON `user` (`surname`, `forename`, `id`);
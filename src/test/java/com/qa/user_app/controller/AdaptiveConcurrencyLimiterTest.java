@@ -0,0 +1,124 @@
+package com.qa.user_app.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+	private AdaptiveConcurrencyLimiter limiter;
+
+	@BeforeEach
+	public void init() {
+		limiter = new AdaptiveConcurrencyLimiter("read", 10, 2, 20, Duration.ofMillis(100), 0.5);
+	}
+
+	@Test
+	public void rejectsOnceLimitIsReachedTest() {
+		for (int i = 0; i < 10; i++) {
+			assertThat(limiter.tryAcquire()).isTrue();
+		}
+		assertThat(limiter.tryAcquire()).isFalse();
+		assertThat(limiter.getInFlight()).isEqualTo(10);
+		assertThat(limiter.getRejected()).isEqualTo(1);
+
+		long now = System.nanoTime();
+		limiter.release(now, now + FAST, false);
+		assertThat(limiter.tryAcquire()).isTrue();
+	}
+
+	@Test
+	public void slowRequestCutsLimitTest() {
+		limiter.tryAcquire();
+		long now = System.nanoTime();
+		limiter.release(now, now + SLOW, false);
+
+		assertThat(limiter.getLimit()).isEqualTo(5);
+	}
+
+	@Test
+	public void failedRequestCutsLimitTest() {
+		limiter.tryAcquire();
+		long now = System.nanoTime();
+		limiter.release(now, now + FAST, true);
+
+		assertThat(limiter.getLimit()).isEqualTo(5);
+	}
+
+	@Test
+	public void requestsStartedBeforeCutDontCutAgainTest() {
+		for (int i = 0; i < 3; i++) {
+			limiter.tryAcquire();
+		}
+		long started = System.nanoTime();
+		// all three were admitted under the old limit, only the first cuts it
+		for (int i = 0; i < 3; i++) {
+			limiter.release(started, started + SLOW + i, false);
+		}
+		assertThat(limiter.getLimit()).isEqualTo(5);
+
+		// a request admitted after the cut cuts it again
+		limiter.tryAcquire();
+		long later = started + SLOW + 10;
+		limiter.release(later, later + SLOW, false);
+		assertThat(limiter.getLimit()).isEqualTo(2);
+	}
+
+	@Test
+	public void limitNeverFallsBelowMinTest() {
+		long now = System.nanoTime();
+		for (int i = 0; i < 10; i++) {
+			limiter.tryAcquire();
+			long started = now + i * SLOW * 2;
+			limiter.release(started, started + SLOW, false);
+		}
+		assertThat(limiter.getLimit()).isEqualTo(2);
+	}
+
+	@Test
+	public void busyFastRequestsRaiseLimitTest() {
+		// the limit in flight at once, each fast one while at least half are busy adds 1/limit
+		for (int round = 0; round < 5; round++) {
+			int limit = limiter.getLimit();
+			for (int i = 0; i < limit; i++) {
+				limiter.tryAcquire();
+			}
+			for (int i = 0; i < limit; i++) {
+				long now = System.nanoTime();
+				limiter.release(now, now + FAST, false);
+			}
+		}
+		assertThat(limiter.getLimit()).isGreaterThan(10).isLessThanOrEqualTo(20);
+	}
+
+	@Test
+	public void idleFastRequestsDontRaiseLimitTest() {
+		for (int i = 0; i < 100; i++) {
+			limiter.tryAcquire();
+			long now = System.nanoTime();
+			limiter.release(now, now + FAST, false);
+		}
+		assertThat(limiter.getLimit()).isEqualTo(10);
+	}
+
+	@Test
+	public void metricsTest() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		limiter.bindTo(registry);
+		limiter.tryAcquire();
+
+		assertThat(registry.get("user.limiter.limit").tag("type", "read").gauge().value()).isEqualTo(10);
+		assertThat(registry.get("user.limiter.in-flight").tag("type", "read").gauge().value()).isEqualTo(1);
+		assertThat(registry.get("user.limiter.rejected").tag("type", "read").functionCounter().count()).isZero();
+	}
+}
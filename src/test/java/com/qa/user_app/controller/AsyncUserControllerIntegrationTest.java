@@ -0,0 +1,119 @@
+package com.qa.user_app.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qa.user_app.controller.request_object.UserRequest;
+
+// /async/user, not @Transactional as the work runs on the executor's threads and transactions
+// - every request is started and then dispatched again once its future completes, as the
+//   container would
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:asyncDB", "user.async.threads=2" })
+@AutoConfigureMockMvc
+@DirtiesContext
+public class AsyncUserControllerIntegrationTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Test
+	public void createReadUpdateDeleteTest() throws Exception {
+		MvcResult created = perform(MockMvcRequestBuilders.post("/async/user")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(new UserRequest("ann", "async", 31))))
+				.andExpect(MockMvcResultMatchers.status().isCreated())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.forename").value("ann"))
+				.andReturn();
+		String location = created.getResponse().getHeader(HttpHeaders.LOCATION);
+		String path = "/async" + location;
+
+		MvcResult read = perform(MockMvcRequestBuilders.get(path))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.surname").value("async"))
+				.andReturn();
+		String etag = read.getResponse().getHeader(HttpHeaders.ETAG);
+		assertThat(etag).isEqualTo(created.getResponse().getHeader(HttpHeaders.ETAG));
+
+		perform(MockMvcRequestBuilders.get("/async/user/search").param("surname", "async"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].forename").value("ann"));
+
+		perform(MockMvcRequestBuilders.put(path)
+				.header(HttpHeaders.IF_MATCH, etag)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(new UserRequest("ann", "async", 32))))
+				.andExpect(MockMvcResultMatchers.status().isAccepted())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.age").value(32));
+
+		// the ETag is stale after the update
+		perform(MockMvcRequestBuilders.delete(path).header(HttpHeaders.IF_MATCH, etag))
+				.andExpect(MockMvcResultMatchers.status().isPreconditionFailed());
+
+		perform(MockMvcRequestBuilders.delete(path))
+				.andExpect(MockMvcResultMatchers.status().isAccepted());
+		perform(MockMvcRequestBuilders.get(path))
+				.andExpect(MockMvcResultMatchers.status().isNotFound());
+	}
+
+	@Test
+	public void getUsersPageTest() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			perform(MockMvcRequestBuilders.post("/async/user")
+					.contentType(MediaType.APPLICATION_JSON)
+					.content(objectMapper.writeValueAsString(new UserRequest("page", "user", 40 + i))))
+					.andExpect(MockMvcResultMatchers.status().isCreated());
+		}
+		perform(MockMvcRequestBuilders.get("/async/user").param("limit", "2"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(2))
+				.andExpect(MockMvcResultMatchers.header().exists(UserController.NEXT_CURSOR_HEADER));
+	}
+
+	@Test
+	public void streamedResponsesHaveTheirOwnTimeoutTest() throws Exception {
+		MvcResult read = mockMvc.perform(MockMvcRequestBuilders.get("/async/user"))
+				.andExpect(MockMvcResultMatchers.request().asyncStarted())
+				.andReturn();
+		// spring.mvc.async.request-timeout
+		assertThat(read.getRequest().getAsyncContext().getTimeout()).isEqualTo(30_000);
+
+		MvcResult export = mockMvc.perform(MockMvcRequestBuilders.get("/user/export"))
+				.andExpect(MockMvcResultMatchers.request().asyncStarted())
+				.andReturn();
+		// user.streaming.timeout
+		assertThat(export.getRequest().getAsyncContext().getTimeout()).isEqualTo(3_600_000);
+		mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(export))
+				.andExpect(MockMvcResultMatchers.status().isOk());
+	}
+
+	@Test
+	public void invalidRequestTest() throws Exception {
+		// rejected before any work is handed to the executor
+		mockMvc.perform(MockMvcRequestBuilders.get("/async/user").param("sort", "height"))
+				.andExpect(MockMvcResultMatchers.status().isBadRequest());
+	}
+
+	private ResultActions perform(MockHttpServletRequestBuilder request) throws Exception {
+		MvcResult started = mockMvc.perform(request)
+				.andExpect(MockMvcResultMatchers.request().asyncStarted())
+				.andReturn();
+		return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(started));
+	}
+}
@@ -0,0 +1,30 @@
+package com.qa.user_app.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+// /actuator/sql outside the dev profile: exposed, but read only
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:sqlEndpointDB",
+		"management.endpoints.web.exposure.include=health,info,metrics,prometheus,sql",
+		"user.sql-profiler.reset-enabled=false" })
+@AutoConfigureMockMvc
+@DirtiesContext
+public class SqlStatisticsEndpointIntegrationTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	public void readOnlyTest() throws Exception {
+		mockMvc.perform(MockMvcRequestBuilders.get("/actuator/sql"))
+				.andExpect(MockMvcResultMatchers.status().isOk());
+		mockMvc.perform(MockMvcRequestBuilders.delete("/actuator/sql"))
+				.andExpect(MockMvcResultMatchers.status().isMethodNotAllowed());
+	}
+}
@@ -0,0 +1,103 @@
+package com.qa.user_app.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class UserAdmissionFilterTest {
+
+	private AdaptiveConcurrencyLimiter reads;
+
+	private AdaptiveConcurrencyLimiter writes;
+
+	private UserAdmissionFilter filter;
+
+	// how many requests reached the "controller"
+	private AtomicInteger handled;
+
+	private int status;
+
+	private final FilterChain chain = (request, response) -> {
+		handled.incrementAndGet();
+		((HttpServletResponse) response).setStatus(status);
+	};
+
+	@BeforeEach
+	public void init() {
+		reads = new AdaptiveConcurrencyLimiter("read", 2, 1, 10, Duration.ofSeconds(10), 0.5);
+		writes = new AdaptiveConcurrencyLimiter("write", 2, 1, 10, Duration.ofSeconds(10), 0.5);
+		filter = new UserAdmissionFilter(reads, writes);
+		handled = new AtomicInteger();
+		status = 200;
+	}
+
+	private MockHttpServletResponse perform(String method, String uri) throws ServletException, IOException {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(new MockHttpServletRequest(method, uri), response, chain);
+		return response;
+	}
+
+	@Test
+	public void admittedRequestIsHandledTest() throws Exception {
+		assertThat(perform("GET", "/user/1").getStatus()).isEqualTo(200);
+		assertThat(handled.get()).isEqualTo(1);
+		assertThat(reads.getInFlight()).isZero();
+	}
+
+	@Test
+	public void rejectedOnceReadsAreFullTest() throws Exception {
+		reads.tryAcquire();
+		reads.tryAcquire();
+
+		MockHttpServletResponse response = perform("GET", "/user/1");
+		assertThat(response.getStatus()).isEqualTo(503);
+		assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+		assertThat(handled.get()).isZero();
+	}
+
+	@Test
+	public void writesHaveTheirOwnLimitTest() throws Exception {
+		reads.tryAcquire();
+		reads.tryAcquire();
+
+		assertThat(perform("PUT", "/user/1").getStatus()).isEqualTo(200);
+		assertThat(perform("POST", "/user").getStatus()).isEqualTo(200);
+
+		writes.tryAcquire();
+		writes.tryAcquire();
+		assertThat(perform("DELETE", "/user/1").getStatus()).isEqualTo(503);
+	}
+
+	@Test
+	public void serverErrorCutsLimitTest() throws Exception {
+		status = 500;
+		perform("GET", "/user");
+
+		assertThat(reads.getLimit()).isEqualTo(1);
+		assertThat(reads.getInFlight()).isZero();
+	}
+
+	@Test
+	public void longRunningRequestsArentLimitedTest() throws Exception {
+		reads.tryAcquire();
+		reads.tryAcquire();
+		writes.tryAcquire();
+		writes.tryAcquire();
+
+		assertThat(perform("GET", "/user/export").getStatus()).isEqualTo(200);
+		assertThat(perform("POST", "/user/import").getStatus()).isEqualTo(200);
+		assertThat(perform("GET", "/actuator/health").getStatus()).isEqualTo(200);
+	}
+}
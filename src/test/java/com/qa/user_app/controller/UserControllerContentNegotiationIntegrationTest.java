@@ -0,0 +1,111 @@
+package com.qa.user_app.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.qa.user_app.controller.request_object.UserRequest;
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.service.UserService;
+
+// Smile, CBOR and gzip over a real connection, as compression is done by Tomcat rather than Spring
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:contentNegotiationDB" })
+@DirtiesContext
+public class UserControllerContentNegotiationIntegrationTest {
+
+	private static final String SMILE = "application/x-jackson-smile";
+
+	private static final String CBOR = "application/cbor";
+
+	private final ObjectMapper jsonMapper = new ObjectMapper();
+
+	private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+	private final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+
+	private final HttpClient httpClient = HttpClient.newHttpClient();
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private UserService userService;
+
+	@Test
+	public void smileAndCborTest() throws Exception {
+		HttpResponse<byte[]> created = httpClient.send(HttpRequest.newBuilder(uri("/user"))
+				.header(HttpHeaders.CONTENT_TYPE, SMILE)
+				.header(HttpHeaders.ACCEPT, SMILE)
+				.POST(HttpRequest.BodyPublishers.ofByteArray(
+						smileMapper.writeValueAsBytes(new UserRequest("sam", "smile", 33))))
+				.build(), HttpResponse.BodyHandlers.ofByteArray());
+		assertThat(created.statusCode()).isEqualTo(201);
+		assertThat(created.headers().firstValue(HttpHeaders.CONTENT_TYPE)).hasValueSatisfying(
+				contentType -> assertThat(contentType).startsWith(SMILE));
+		JsonNode user = smileMapper.readTree(created.body());
+		assertThat(user.get("forename").asText()).isEqualTo("sam");
+
+		HttpResponse<byte[]> read = httpClient.send(get("/user/" + user.get("id").asInt(), CBOR),
+				HttpResponse.BodyHandlers.ofByteArray());
+		assertThat(read.statusCode()).isEqualTo(200);
+		assertThat(cborMapper.readTree(read.body()).get("surname").asText()).isEqualTo("smile");
+
+		// JSON is still the default
+		HttpResponse<String> json = httpClient.send(HttpRequest.newBuilder(uri("/user/" + user.get("id").asInt()))
+				.build(), HttpResponse.BodyHandlers.ofString());
+		assertThat(jsonMapper.readTree(json.body()).get("age").asInt()).isEqualTo(33);
+	}
+
+	@Test
+	public void gzipTest() throws Exception {
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 60; i++) {
+			users.add(new User("gus", "gzip", 20 + i));
+		}
+		userService.createAll(users);
+
+		HttpResponse<byte[]> page = httpClient.send(HttpRequest.newBuilder(uri("/user/search?surname=gzip"))
+				.header(HttpHeaders.ACCEPT, "application/json")
+				.header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+				.build(), HttpResponse.BodyHandlers.ofByteArray());
+		assertThat(page.statusCode()).isEqualTo(200);
+		assertThat(page.headers().firstValue(HttpHeaders.CONTENT_ENCODING)).hasValue("gzip");
+		JsonNode body = jsonMapper.readTree(new GZIPInputStream(new ByteArrayInputStream(page.body())));
+		assertThat(body.size()).isEqualTo(UserService.DEFAULT_PAGE_SIZE);
+
+		// too small to be worth it
+		User user = userService.create(new User("tiny", "gzip", 18));
+		HttpResponse<byte[]> single = httpClient.send(HttpRequest.newBuilder(uri("/user/" + user.getId()))
+				.header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+				.build(), HttpResponse.BodyHandlers.ofByteArray());
+		assertThat(single.headers().firstValue(HttpHeaders.CONTENT_ENCODING)).isEmpty();
+	}
+
+	private HttpRequest get(String path, String accept) {
+		return HttpRequest.newBuilder(uri(path)).header(HttpHeaders.ACCEPT, accept).build();
+	}
+
+	private URI uri(String path) {
+		return URI.create("http://localhost:" + port + path);
+	}
+}
@@ -0,0 +1,83 @@
+package com.qa.user_app.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.data.repository.UserRepository;
+
+// POST /user/import, not @Transactional as the users are saved on the async thread in
+// transactions of their own, so the imported users are removed afterwards instead
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:importDB")
+@AutoConfigureMockMvc
+@DirtiesContext
+public class UserControllerImportIntegrationTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@AfterEach
+	public void tearDown() {
+		userRepository.deleteAllInBatch();
+	}
+
+	private String importUsers(MediaType contentType, String body) throws Exception {
+		MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/user/import")
+				.contentType(contentType)
+				.content(body))
+				.andExpect(MockMvcResultMatchers.request().asyncStarted())
+				.andReturn();
+		return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_NDJSON))
+				.andReturn().getResponse().getContentAsString();
+	}
+
+	@Test
+	public void importNdjsonTest() throws Exception {
+		String response = importUsers(MediaType.APPLICATION_NDJSON,
+				"{\"forename\":\"bob\",\"surname\":\"lee\",\"age\":22}\n"
+						+ "{\"forename\":\"fred\",\"surname\":\"see\",\"age\":200}\n"
+						+ "{\"forename\":\"sarah\"\n"
+						+ "{\"forename\":\"sarah\",\"surname\":\"fee\",\"age\":28}\n");
+
+		assertThat(response.split("\n")).satisfiesExactly(
+				line -> assertThat(line).isEqualTo("{\"line\":2,\"error\":\"age: must be less than or equal to 130\"}"),
+				line -> assertThat(line).startsWith("{\"line\":3,\"error\":\"Invalid JSON: Unexpected end-of-input"),
+				line -> assertThat(line).isEqualTo("{\"imported\":2,\"failed\":2}"));
+		assertThat(userRepository.findAll()).extracting(User::getForename)
+				.contains("bob", "sarah")
+				.doesNotContain("fred");
+	}
+
+	@Test
+	public void importCsvTest() throws Exception {
+		StringBuilder body = new StringBuilder("forename,surname,age\n");
+		// more than one chunk
+		int rows = UserImporter.CHUNK_SIZE + 10;
+		for (int i = 0; i < rows; i++) {
+			body.append("user").append(i).append(",imported,").append(18 + i % 100).append('\n');
+		}
+		body.append("nobody,,30\n");
+
+		String response = importUsers(MediaType.parseMediaType("text/csv"), body.toString());
+
+		assertThat(response).isEqualTo("{\"line\":" + (rows + 2) + ",\"error\":\"surname: length must be between 1 and 2147483647\"}\n"
+				+ "{\"imported\":" + rows + ",\"failed\":1}\n");
+		assertThat(userRepository.count()).isGreaterThanOrEqualTo(rows);
+	}
+}
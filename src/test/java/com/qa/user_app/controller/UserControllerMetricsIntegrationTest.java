@@ -0,0 +1,62 @@
+package com.qa.user_app.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+// Tests normally replace the Prometheus registry with a simple one, @AutoConfigureMetrics keeps it
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:metricsDB",
+		"spring.jpa.properties.hibernate.generate_statistics=true" })
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+@DirtiesContext
+public class UserControllerMetricsIntegrationTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	public void prometheusScrapeTest() throws Exception {
+		mockMvc.perform(MockMvcRequestBuilders.get("/user?limit=1")).andExpect(MockMvcResultMatchers.status().isOk());
+		// no user has this id, so the timer records the exception
+		mockMvc.perform(MockMvcRequestBuilders.get("/user/999999")).andExpect(MockMvcResultMatchers.status().isNotFound());
+
+		String scrape = mockMvc.perform(MockMvcRequestBuilders.get("/actuator/prometheus"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andReturn().getResponse().getContentAsString();
+
+		// endpoint latency percentiles and buckets
+		assertThat(scrape).contains("http_server_requests_seconds{")
+				.containsPattern("http_server_requests_seconds\\{.*uri=\"/user\",quantile=\"0.99\"")
+				.containsPattern("http_server_requests_seconds_bucket\\{.*uri=\"/user/\\{id\\}\"");
+		// service method timers
+		assertThat(scrape).containsPattern("user_service_seconds\\{.*method=\"getPage\".*quantile=\"0.95\"")
+				.containsPattern("user_service_seconds_count\\{.*exception=\"UserNotFoundException\",method=\"getById\"");
+		// hibernate statistics and the connection pool
+		assertThat(scrape).contains("hibernate_query_executions_total", "hibernate_entities_loads_total",
+				"hikaricp_connections_active");
+	}
+
+	@Test
+	public void sqlStatisticsTest() throws Exception {
+		mockMvc.perform(MockMvcRequestBuilders.delete("/actuator/sql"))
+				.andExpect(MockMvcResultMatchers.status().isNoContent());
+		mockMvc.perform(MockMvcRequestBuilders.get("/user/search?forename=Nobody"))
+				.andExpect(MockMvcResultMatchers.status().isOk());
+
+		mockMvc.perform(MockMvcRequestBuilders.get("/actuator/sql"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$[?(@.sql =~ /select .* from user .*/)].count").isNotEmpty())
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].totalMillis").isNumber())
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].maxMillis").isNumber())
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].histogram").isMap());
+	}
+}
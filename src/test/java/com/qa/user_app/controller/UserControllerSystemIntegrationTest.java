@@ -13,6 +13,7 @@ import java.util.Optional;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -22,6 +23,7 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
@@ -35,13 +37,16 @@ import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qa.user_app.data.datasource.SqlStatementCounter;
 import com.qa.user_app.data.entity.User;
 import com.qa.user_app.data.repository.UserRepository;
+import com.qa.user_app.service.UserService;
 
 // Setting a random port is good practice in preparation for parallel testing
 // - running multiple tests at the same time
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT) // Start the ApplicationContext on a random port
 @AutoConfigureMockMvc // Configure the MockMvc object
+@Import(SqlStatementCounter.class) // counts the SQL statements each request runs
 @Transactional // Roll back the state of the database after every test so each test has a fresh
 				// slate
 public class UserControllerSystemIntegrationTest {
@@ -57,6 +62,16 @@ public class UserControllerSystemIntegrationTest {
 	@Autowired
 	private UserRepository userRepository;
 
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	// each test pins the statements its requests run, so an N+1 or an extra round trip fails it
+	@Autowired
+	private SqlStatementCounter sqlStatements;
+
 	private List<User> usersInDatabase;
 	private int nextNewElementsId;
 	
@@ -64,12 +79,20 @@ public class UserControllerSystemIntegrationTest {
 	// before each test initialise the database with the information below
 	@BeforeEach
 	public void init() {
-		List<User> users = List.of(new User(1, "bob", "lee", 22), new User(2, "fred", "see", 25),
-				new User(3, "sarah", "fee", 28));
+		// remove the users seeded on startup by the dev profile, this is rolled back too
+		userRepository.deleteAllInBatch();
+		// ids are assigned by the user_seq sequence
+		List<User> users = List.of(new User("bob", "lee", 22), new User("fred", "see", 25),
+				new User("sarah", "fee", 28));
 		usersInDatabase = new ArrayList<>();
 		usersInDatabase.addAll(userRepository.saveAll(users));
 		int size = usersInDatabase.size();
 		nextNewElementsId = usersInDatabase.get(size - 1).getId() + 1;
+		// write the users now and forget them, so requests read them from the database
+		// rather than finding them in this test's persistence context
+		userRepository.flush();
+		entityManager.clear();
+		sqlStatements.reset();
 	}
 
 	@Test
@@ -92,13 +115,45 @@ public class UserControllerSystemIntegrationTest {
 
 		// Send the request and assert the results where as expected
 		mockMvc.perform(mockRequest).andExpect(statusMatcher).andExpect(contentMatcher);
+		sqlStatements.assertStatements(1, 0, 0, 0);
+	}
+
+	@Test
+	public void getUsersPagedTest() throws Exception {
+		// the first page has a cursor pointing at its last user
+		MockHttpServletRequestBuilder firstPage = MockMvcRequestBuilders.request(HttpMethod.GET, "/user?limit=2");
+		firstPage.accept(MediaType.APPLICATION_JSON);
+		String cursor = String.valueOf(usersInDatabase.get(1).getId());
+
+		mockMvc.perform(firstPage).andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.content().json(objectMapper.writeValueAsString(usersInDatabase.subList(0, 2))))
+				.andExpect(MockMvcResultMatchers.header().string(UserController.NEXT_CURSOR_HEADER, cursor));
+
+		// the last page starts after the cursor and has no cursor of its own
+		MockHttpServletRequestBuilder lastPage = MockMvcRequestBuilders
+				.request(HttpMethod.GET, "/user?limit=2&after=" + cursor);
+		lastPage.accept(MediaType.APPLICATION_JSON);
+
+		mockMvc.perform(lastPage).andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.content().json(objectMapper.writeValueAsString(usersInDatabase.subList(2, 3))))
+				.andExpect(MockMvcResultMatchers.header().doesNotExist(UserController.NEXT_CURSOR_HEADER));
+		// one query per page, the cursor is the last id so it isn't looked up
+		sqlStatements.assertStatements(2, 0, 0, 0);
 	}
 
+	@Test
+	public void getUsersInvalidSortTest() throws Exception {
+		MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders.request(HttpMethod.GET, "/user?sort=shoeSize");
+
+		mockMvc.perform(mockRequest).andExpect(MockMvcResultMatchers.status().isBadRequest());
+	}
 
 	@Test
 	public void getUserByIdTest() throws Exception {
-		int id = 1;
-		User expectedUser = userRepository.getById(id);
+		int id = usersInDatabase.get(0).getId();
+		User expectedUser = userRepository.findById(id).get();
+		// the request has to read the user itself
+		entityManager.detach(expectedUser);
 		MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
 				.request(HttpMethod.GET, "/user/" + id);
 
@@ -115,9 +170,13 @@ public class UserControllerSystemIntegrationTest {
 		// values
 		ResultMatcher statusMatcher = MockMvcResultMatchers.status().isOk();
 		ResultMatcher contentMatcher = MockMvcResultMatchers.content().json(user);
+		sqlStatements.reset();
 
 		// Send the request and assert the results where as expected
 		mockMvc.perform(mockRequest).andExpect(statusMatcher).andExpect(contentMatcher);
+		// within this test's transaction the user is read with findById on the request thread, the
+		// batch loader's read is pinned by UserServiceCacheIntegrationTest
+		sqlStatements.assertStatements(1, 0, 0, 0);
 	}
 
 	@Test
@@ -139,11 +198,48 @@ public class UserControllerSystemIntegrationTest {
 
 		// Send the request and assert the results where as expected
 		mockMvc.perform(mockRequest).andExpect(statusMatcher).andExpect(contentMatcher);
+		// the INSERT is only sent when the transaction (this test's) is flushed
+		userRepository.flush();
+		sqlStatements.assertStatements(0, 1, 0, 0);
+	}
+	
+	@Test
+	public void createUsersTest() throws Exception {
+		List<User> usersToSave = List.of(new User("Janet", "Carlisle", 32), new User("John", "Carlisle", 34));
+		List<User> expectedUsers = List.of(new User(nextNewElementsId, "Janet", "Carlisle", 32),
+				new User(nextNewElementsId + 1, "John", "Carlisle", 34));
+
+		MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders.request(HttpMethod.POST, "/user/batch");
+		mockRequest.contentType(MediaType.APPLICATION_JSON);
+		mockRequest.content(objectMapper.writeValueAsString(usersToSave));
+		mockRequest.accept(MediaType.APPLICATION_JSON);
+
+		ResultMatcher statusMatcher = MockMvcResultMatchers.status().isCreated();
+		ResultMatcher contentMatcher = MockMvcResultMatchers.content().json(objectMapper.writeValueAsString(expectedUsers));
+
+		mockMvc.perform(mockRequest).andExpect(statusMatcher).andExpect(contentMatcher);
+		// both users in one batch
+		sqlStatements.assertStatements(0, 1, 0, 0);
+	}
+
+	@Test
+	public void createUsersInvalidUserTest() throws Exception {
+		// the second user is too young, so nothing should be saved
+		List<User> usersToSave = List.of(new User("Janet", "Carlisle", 32), new User("John", "Carlisle", 12));
+
+		MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders.request(HttpMethod.POST, "/user/batch");
+		mockRequest.contentType(MediaType.APPLICATION_JSON);
+		mockRequest.content(objectMapper.writeValueAsString(usersToSave));
+
+		mockMvc.perform(mockRequest).andExpect(MockMvcResultMatchers.status().isBadRequest());
+		// rejected before anything is sent to the database
+		sqlStatements.assertStatements(0, 0, 0, 0);
+		assertEquals(usersInDatabase.size(), userRepository.count());
 	}
 	
 	@Test
 	public void updateUserTest() throws Exception {
-		int id = 1;
+		int id = usersInDatabase.get(0).getId();
 		User updatedUser = new User(id, "bob", "lee", 23);
 		
 		MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
@@ -160,14 +256,17 @@ public class UserControllerSystemIntegrationTest {
 		
 		ResultMatcher statusMatcher = MockMvcResultMatchers.status().isAccepted();
 		ResultMatcher contentMatcher = MockMvcResultMatchers.content().json(expected);
+		// without If-Match the new version isn't known, so there is no ETag
+		ResultMatcher eTagMatcher = MockMvcResultMatchers.header().doesNotExist(HttpHeaders.ETAG);
 		
-		mockMvc.perform(mockRequest).andExpect(statusMatcher).andExpect(contentMatcher);
-		
+		mockMvc.perform(mockRequest).andExpect(statusMatcher).andExpect(contentMatcher).andExpect(eTagMatcher);
+		// a single UPDATE, without reading the user first
+		sqlStatements.assertStatements(0, 0, 1, 0);
 	}
 
 	@Test
 	public void deleteUserTest () throws Exception {
-		int id = 1;
+		int id = usersInDatabase.get(0).getId();
 		
 		MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
 				.request(HttpMethod.DELETE, "/user/" + id);
@@ -180,6 +279,186 @@ public class UserControllerSystemIntegrationTest {
 
 		// Send the request and assert the results where as expected
 		mockMvc.perform(mockRequest).andExpect(statusMatcher);
+		// a single DELETE, without reading the user first
+		sqlStatements.assertStatements(0, 0, 0, 1);
 		assertEquals(Optional.empty(), userRepository.findById(id));
 	}
+
+	@Test
+	public void updateMissingUserTest() throws Exception {
+		int id = nextNewElementsId + 1000;
+
+		MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
+				.request(HttpMethod.PUT, "/user/" + id);
+		mockRequest.contentType(MediaType.APPLICATION_JSON);
+		mockRequest.content(objectMapper.writeValueAsString(new User("bob", "lee", 23)));
+
+		mockMvc.perform(mockRequest).andExpect(MockMvcResultMatchers.status().isNotFound());
+		sqlStatements.assertStatements(0, 0, 1, 0);
+	}
+
+	@Test
+	public void deleteMissingUserTest() throws Exception {
+		int id = nextNewElementsId + 1000;
+
+		MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
+				.request(HttpMethod.DELETE, "/user/" + id);
+
+		mockMvc.perform(mockRequest).andExpect(MockMvcResultMatchers.status().isNotFound());
+		sqlStatements.assertStatements(0, 0, 0, 1);
+		assertEquals(usersInDatabase.size(), userRepository.count());
+	}
+
+	@Test
+	public void getUserByIdNotModifiedTest() throws Exception {
+		int id = usersInDatabase.get(0).getId();
+		// a new user is at version 0
+		String eTag = "W/\"0\"";
+
+		mockMvc.perform(MockMvcRequestBuilders.request(HttpMethod.GET, "/user/" + id))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, eTag));
+
+		// asking again with the ETag returns no body
+		mockMvc.perform(MockMvcRequestBuilders.request(HttpMethod.GET, "/user/" + id).header(HttpHeaders.IF_NONE_MATCH, eTag))
+				.andExpect(MockMvcResultMatchers.status().isNotModified())
+				.andExpect(MockMvcResultMatchers.content().string(""));
+	}
+
+	@Test
+	public void getUsersNotModifiedTest() throws Exception {
+		String eTag = mockMvc.perform(MockMvcRequestBuilders.request(HttpMethod.GET, "/user"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mockMvc.perform(MockMvcRequestBuilders.request(HttpMethod.GET, "/user").header(HttpHeaders.IF_NONE_MATCH, eTag))
+				.andExpect(MockMvcResultMatchers.status().isNotModified());
+
+		// changing a user on the page changes its ETag
+		// - through the service, a bulk update straight to the repository isn't seen by the
+		//   response cache
+		userService.update(usersInDatabase.get(0).getId(), new User("bob", "lee", 23), null);
+		mockMvc.perform(MockMvcRequestBuilders.request(HttpMethod.GET, "/user").header(HttpHeaders.IF_NONE_MATCH, eTag))
+				.andExpect(MockMvcResultMatchers.status().isOk());
+	}
+
+	@Test
+	public void updateUserIfMatchTest() throws Exception {
+		int id = usersInDatabase.get(0).getId();
+		User updatedUser = new User(id, "bob", "lee", 23);
+
+		// the user is at version 0, so If-Match "1" is out of date and W/"0" (its weak ETag) is current
+		MockHttpServletRequestBuilder staleRequest = MockMvcRequestBuilders.request(HttpMethod.PUT, "/user/" + id)
+				.header(HttpHeaders.IF_MATCH, "\"1\"").contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(updatedUser));
+		mockMvc.perform(staleRequest).andExpect(MockMvcResultMatchers.status().isPreconditionFailed());
+
+		MockHttpServletRequestBuilder currentRequest = MockMvcRequestBuilders.request(HttpMethod.PUT, "/user/" + id)
+				.header(HttpHeaders.IF_MATCH, "W/\"0\"").contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(updatedUser));
+		mockMvc.perform(currentRequest).andExpect(MockMvcResultMatchers.status().isAccepted())
+				.andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "W/\"1\""))
+				.andExpect(MockMvcResultMatchers.content().json(objectMapper.writeValueAsString(updatedUser)));
+	}
+
+	@Test
+	public void deleteUserIfMatchTest() throws Exception {
+		int id = usersInDatabase.get(0).getId();
+
+		mockMvc.perform(MockMvcRequestBuilders.request(HttpMethod.DELETE, "/user/" + id).header(HttpHeaders.IF_MATCH, "\"1\""))
+				.andExpect(MockMvcResultMatchers.status().isPreconditionFailed());
+		assertThat(userRepository.findById(id)).isPresent();
+
+		mockMvc.perform(MockMvcRequestBuilders.request(HttpMethod.DELETE, "/user/" + id).header(HttpHeaders.IF_MATCH, "\"0\""))
+				.andExpect(MockMvcResultMatchers.status().isAccepted());
+		assertEquals(Optional.empty(), userRepository.findById(id));
+	}
+
+	@Test
+	public void getUsersByIdsTest() throws Exception {
+		// in the order asked for, missing ids are left out
+		List<User> expectedUsers = List.of(usersInDatabase.get(2), usersInDatabase.get(0));
+		String ids = usersInDatabase.get(2).getId() + "," + (nextNewElementsId + 1000) + "," + usersInDatabase.get(0).getId();
+
+		mockMvc.perform(MockMvcRequestBuilders.request(HttpMethod.GET, "/user?ids=" + ids).accept(MediaType.APPLICATION_JSON))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.content().json(objectMapper.writeValueAsString(expectedUsers), true));
+		// one IN query for all the ids
+		sqlStatements.assertStatements(1, 0, 0, 0);
+	}
+
+	@Test
+	public void searchUsersTest() throws Exception {
+		// users between 24 and 30, a page at a time
+		String cursor = String.valueOf(usersInDatabase.get(1).getId());
+		mockMvc.perform(MockMvcRequestBuilders.request(HttpMethod.GET, "/user/search?minAge=24&maxAge=30&limit=1")
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.content().json(objectMapper.writeValueAsString(usersInDatabase.subList(1, 2)), true))
+				.andExpect(MockMvcResultMatchers.header().string(UserController.NEXT_CURSOR_HEADER, cursor));
+
+		mockMvc.perform(MockMvcRequestBuilders
+				.request(HttpMethod.GET, "/user/search?minAge=24&maxAge=30&limit=1&after=" + cursor)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.content().json(objectMapper.writeValueAsString(usersInDatabase.subList(2, 3)), true))
+				.andExpect(MockMvcResultMatchers.header().doesNotExist(UserController.NEXT_CURSOR_HEADER));
+		sqlStatements.assertStatements(2, 0, 0, 0);
+	}
+
+	@Test
+	public void searchUsersBySurnameAndForenameTest() throws Exception {
+		mockMvc.perform(MockMvcRequestBuilders.request(HttpMethod.GET, "/user/search?surname=fee&forename=sa")
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.content().json(objectMapper.writeValueAsString(usersInDatabase.subList(2, 3)), true));
+	}
+
+	@Test
+	public void getUserFieldsTest() throws Exception {
+		// id is always included, the other fields only when asked for
+		String expected = "[{\"id\":" + usersInDatabase.get(0).getId() + ",\"surname\":\"lee\"}]";
+		mockMvc.perform(MockMvcRequestBuilders.request(HttpMethod.GET, "/user?fields=surname&limit=1")
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.content().json(expected, true))
+				.andExpect(MockMvcResultMatchers.header().string(UserController.NEXT_CURSOR_HEADER,
+						String.valueOf(usersInDatabase.get(0).getId())));
+		sqlStatements.assertStatements(1, 0, 0, 0);
+	}
+
+	@Test
+	public void searchUserFieldsTest() throws Exception {
+		String expected = "[{\"id\":" + usersInDatabase.get(2).getId() + ",\"forename\":\"sarah\",\"age\":28}]";
+		mockMvc.perform(MockMvcRequestBuilders.request(HttpMethod.GET, "/user/search?surname=fee&fields=forename,age")
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.content().json(expected, true));
+	}
+
+	@Test
+	public void getUserFieldsInvalidFieldTest() throws Exception {
+		mockMvc.perform(MockMvcRequestBuilders.request(HttpMethod.GET, "/user?fields=password"))
+				.andExpect(MockMvcResultMatchers.status().isBadRequest());
+	}
+
+	@Test
+	public void cachedUserIsReadAgainAfterUpdateTest() throws Exception {
+		int id = usersInDatabase.get(0).getId();
+		// the second read is answered by the response cache
+		for (int i = 0; i < 2; i++) {
+			mockMvc.perform(MockMvcRequestBuilders.get("/user/" + id))
+					.andExpect(MockMvcResultMatchers.status().isOk())
+					.andExpect(MockMvcResultMatchers.jsonPath("$.age").value(22));
+		}
+		mockMvc.perform(MockMvcRequestBuilders.put("/user/" + id)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(new User("bob", "lee", 23))))
+				.andExpect(MockMvcResultMatchers.status().isAccepted());
+		mockMvc.perform(MockMvcRequestBuilders.get("/user/" + id))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.age").value(23));
+		// the cached read runs no query
+		sqlStatements.assertStatements(2, 0, 1, 0);
+	}
 }
\ No newline at end of file
@@ -3,11 +3,15 @@ package com.qa.user_app.controller;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import javax.persistence.EntityNotFoundException;
 
@@ -17,23 +21,40 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.qa.user_app.controller.request_object.UserRequest;
 import com.qa.user_app.data.entity.User;
 import com.qa.user_app.service.UserService;
+import com.qa.user_app.service.UserSort;
+import com.qa.user_app.service.dto.UserDTO;
+import com.qa.user_app.service.dto.UserPage;
+import com.qa.user_app.service.dto.UserWriteStatus;
 
 // @SpringBootTest // this will start a full application context
 // Start an application context with only beans required for the controller layer
 // - the specified controller is loaded into the context
 // - some other web layer components, such as filter, will be initialised too
 @WebMvcTest(UserController.class)
+@Import(UserMapper.class) // not a web component, so it has to be added to the context by hand
 public class UserControllerWebIntegrationTest {
 
 	@Autowired // field injection as an example of dependency injection
 	private UserController controller;
 
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private UserMapper userMapper;
+
 	// we need a fake UserService
 	// - we use Mockito to create a mock object
 	@MockBean // we are using our defined UserService, but the methods will be mocked (we have
@@ -42,7 +63,8 @@ public class UserControllerWebIntegrationTest {
 
 	// we need some data for our tests
 	private List<User> users;
-	private User userToCreate;
+	private List<UserDTO> userDTOs;
+	private UserRequest userToCreate;
 	private User validUser;
 	private User userToFind;
 	private User deletedUser;
@@ -53,36 +75,102 @@ public class UserControllerWebIntegrationTest {
 		users = new ArrayList<>();
 		users.addAll(
 				List.of(new User(1, "bob", "lee", 22), new User(2, "fred", "lee", 28), new User(3, "beth", "lee", 32)));
-		userToCreate = new User("bob", "lee", 22);
+		userDTOs = List.of(new UserDTO(1, "bob", "lee", 22), new UserDTO(2, "fred", "lee", 28),
+				new UserDTO(3, "beth", "lee", 32));
+		userToCreate = new UserRequest("bob", "lee", 22);
 		validUser = new User(1, "bob", "lee", 22);
 		userToFind = users.get(2); // id ==3
 	}
 
 	@Test // junit annotation
 	public void getAllUsersTest() {
-		ResponseEntity<List<User>> expected = new ResponseEntity<List<User>>(users, HttpStatus.OK);
+		HttpHeaders headers = new HttpHeaders();
+		headers.setETag(UserETags.of(users, null));
+		ResponseEntity<List<UserDTO>> expected = new ResponseEntity<List<UserDTO>>(userDTOs, headers, HttpStatus.OK);
 		// given (some initial data/conditions)
 		// this is being performed by init()
 
 		// when (the action does occur)
-		when(userService.getAll()).thenReturn(users);
+		when(userService.getPage(null, UserService.DEFAULT_PAGE_SIZE, UserSort.ID)).thenReturn(new UserPage(users, null));
 
 		// then (assert this happened)
-		ResponseEntity<List<User>> actual = controller.getUsers();
+		ResponseEntity<List<UserDTO>> actual = controller.getUsers(null, UserService.DEFAULT_PAGE_SIZE, "id");
 		assertThat(expected).isEqualTo(actual);
 
 		// we also need to verify that the service was called by the controller
-		verify(userService, times(1)).getAll();
+		verify(userService, times(1)).getPage(null, UserService.DEFAULT_PAGE_SIZE, UserSort.ID);
 		// userService is the mock bean
-		// equivalent to verify(userService.getAll());
+		// equivalent to verify(userService.getPage(...));
+	}
+
+	@Test
+	public void getUsersNextPageTest() {
+		List<User> firstPage = users.subList(0, 2);
+		HttpHeaders headers = new HttpHeaders();
+		headers.setETag(UserETags.of(firstPage, 2));
+		headers.add(UserController.NEXT_CURSOR_HEADER, "2");
+		ResponseEntity<List<UserDTO>> expected = new ResponseEntity<List<UserDTO>>(userDTOs.subList(0, 2), headers,
+				HttpStatus.OK);
+
+		when(userService.getPage(null, 2, UserSort.SURNAME)).thenReturn(new UserPage(firstPage, 2));
+
+		ResponseEntity<List<UserDTO>> actual = controller.getUsers(null, 2, "surname");
+		assertThat(expected).isEqualTo(actual);
+
+		verify(userService).getPage(null, 2, UserSort.SURNAME);
+	}
+
+	@Test
+	public void getUsersByIdsTest() {
+		List<Integer> ids = List.of(3, 1);
+		List<User> foundUsers = List.of(users.get(2), users.get(0));
+		HttpHeaders headers = new HttpHeaders();
+		headers.setETag(UserETags.of(foundUsers, null));
+		ResponseEntity<List<UserDTO>> expected = new ResponseEntity<List<UserDTO>>(
+				List.of(userDTOs.get(2), userDTOs.get(0)), headers, HttpStatus.OK);
+
+		when(userService.getByIds(ids)).thenReturn(foundUsers);
+
+		assertThat(controller.getUsersByIds(ids)).isEqualTo(expected);
+		verify(userService).getByIds(ids);
+	}
+
+	@Test
+	public void suggestUsersTest() {
+		when(userService.suggest("bo", 10)).thenReturn(users.subList(0, 1));
+
+		assertThat(controller.suggestUsers("bo", 10)).isEqualTo(ResponseEntity.ok(userDTOs.subList(0, 1)));
+		verify(userService).suggest("bo", 10);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void exportUsersTest() throws Exception {
+		// the mocked service hands each user to the controller's callback in turn
+		doAnswer(invocation -> {
+			users.forEach(invocation.getArgument(0, Consumer.class));
+			return null;
+		}).when(userService).forEach(any());
+
+		ResponseEntity<StreamingResponseBody> response = controller.exportUsers();
+		assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+
+		// write the body out as Spring would and check there is one JSON user per line
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		response.getBody().writeTo(body);
+		StringBuilder expected = new StringBuilder();
+		for (UserDTO user : userDTOs) {
+			expected.append(objectMapper.writeValueAsString(user)).append('\n');
+		}
+		assertThat(body.toString()).isEqualTo(expected.toString());
 	}
 
 	public void getUserByIdTest() {
-		ResponseEntity<User> expected = ResponseEntity.of(Optional.of(validUser));
+		ResponseEntity<UserDTO> expected = ResponseEntity.of(Optional.of(userDTOs.get(0)));
 
 		when(userService.getById(1)).thenReturn(validUser);
 
-		ResponseEntity<User> actual = controller.getUserById(1);
+		ResponseEntity<UserDTO> actual = controller.getUserById(1);
 
 		assertThat(expected).isEqualTo(actual);
 
@@ -94,40 +182,89 @@ public class UserControllerWebIntegrationTest {
 		HttpHeaders headers = new HttpHeaders();
 		headers.add("Location", "/user/" + String.valueOf(validUser.getId()));
 		// body, httpHeaders, responseStatusCode
-		ResponseEntity<User> expected = new ResponseEntity<User>(validUser, headers, HttpStatus.CREATED);
+		ResponseEntity<UserDTO> expected = new ResponseEntity<UserDTO>(userDTOs.get(0), headers, HttpStatus.CREATED);
 
 		// when we create a new user (userToCreate, without ID), returns a validUser
 		// (with an ID)
-		when(userService.create(userToCreate)).thenReturn(validUser);
+		when(userService.create(userMapper.toUser(userToCreate))).thenReturn(validUser);
 
 		// then
-		ResponseEntity<User> actual = controller.createUser(userToCreate);
+		ResponseEntity<?> actual = controller.createUser(userToCreate);
 		assertThat(expected).isEqualTo(actual);
 
 		// verify that this mock object did in fact have its method called by
 		// controllers
 		// did the create method run with the userToCreate user
-		verify(userService).create(userToCreate);
+		verify(userService).create(userMapper.toUser(userToCreate));
+	}
+
+	@Test
+	public void createUserWriteBehindTest() {
+		when(userService.isWriteBehind()).thenReturn(true);
+		when(userService.enqueue(userMapper.toUser(userToCreate))).thenReturn("abc");
+		HttpHeaders headers = new HttpHeaders();
+		headers.add("Location", "/user/pending/abc");
+		ResponseEntity<UserWriteStatus> expected = new ResponseEntity<UserWriteStatus>(UserWriteStatus.pending("abc"),
+				headers, HttpStatus.ACCEPTED);
+
+		ResponseEntity<?> actual = controller.createUser(userToCreate);
+		assertThat(actual).isEqualTo(expected);
+
+		verify(userService, times(0)).create(userMapper.toUser(userToCreate));
+	}
+
+	@Test
+	public void createUsersTest() {
+		List<UserRequest> usersToCreate = List.of(userToCreate, new UserRequest("fred", "lee", 28));
+		List<User> createdUsers = users.subList(0, 2);
+		ResponseEntity<List<UserDTO>> expected = new ResponseEntity<List<UserDTO>>(userDTOs.subList(0, 2),
+				HttpStatus.CREATED);
+
+		when(userService.createAll(userMapper.toUsers(usersToCreate))).thenReturn(createdUsers);
+
+		ResponseEntity<List<UserDTO>> actual = controller.createUsers(usersToCreate);
+		assertThat(expected).isEqualTo(actual);
+
+		verify(userService).createAll(userMapper.toUsers(usersToCreate));
 	}
 
 	@Test
 	public void updateUserTest() {
 		User updatedUser = new User(1, "bob", "lee-swagger", 22);
-		User toUpdateWith = new User("bob", "lee-swagger", 22);
+		UserRequest toUpdateWith = new UserRequest("bob", "lee-swagger", 22);
 		int userId = updatedUser.getId();
 
 //		HttpHeaders headers = new HttpHeaders();
 //		headers.add("Location", "/user/" + String.valueOf(userId));
 		// if we wanted the above we would have to add headers to our UserController class
 		// - and add header to the expected statement below
-		ResponseEntity<User> expected = new ResponseEntity<User>(updatedUser, HttpStatus.ACCEPTED);
+		ResponseEntity<UserDTO> expected = new ResponseEntity<UserDTO>(userMapper.toDTO(updatedUser), HttpStatus.ACCEPTED);
+
+		when(userService.update(userId, userMapper.toUser(toUpdateWith), null)).thenReturn(updatedUser);
+
+		ResponseEntity<UserDTO> actual = controller.updateUser(userId, toUpdateWith, null);
+
+		assertThat(expected).isEqualTo(actual);
+		verify(userService).update(userId, userMapper.toUser(toUpdateWith), null);
+	}
+
+	@Test
+	public void updateUserIfMatchTest() {
+		UserRequest toUpdateWith = new UserRequest("bob", "lee-swagger", 22);
+		User updatedUser = new User(1, "bob", "lee-swagger", 22);
+		updatedUser.setVersion(4);
+		HttpHeaders headers = new HttpHeaders();
+		headers.setETag("W/\"4\"");
+		ResponseEntity<UserDTO> expected = new ResponseEntity<UserDTO>(userMapper.toDTO(updatedUser), headers,
+				HttpStatus.ACCEPTED);
 
-		when(userService.update(userId, toUpdateWith)).thenReturn(updatedUser);
+		// the If-Match version is passed on to the service
+		when(userService.update(1, userMapper.toUser(toUpdateWith), 3)).thenReturn(updatedUser);
 
-		ResponseEntity<User> actual = controller.updateUser(userId, toUpdateWith);
+		ResponseEntity<UserDTO> actual = controller.updateUser(1, toUpdateWith, "\"3\"");
 
 		assertThat(expected).isEqualTo(actual);
-		verify(userService).update(userId, toUpdateWith);
+		verify(userService).update(1, userMapper.toUser(toUpdateWith), 3);
 	}
 
 	@Test
@@ -135,12 +272,12 @@ public class UserControllerWebIntegrationTest {
 		// SET UP
 		int userId = 1;
 		ResponseEntity<?> expected = ResponseEntity.accepted().build();
-		ResponseEntity<?> actual = controller.deleteUser(userId);
+		ResponseEntity<?> actual = controller.deleteUser(userId, null);
 
 		assertThat(expected).isEqualTo(actual);
 
 		// VERIFY
-		verify(userService).delete(1);
+		verify(userService).delete(1, null);
 
 	}
 }
\ No newline at end of file
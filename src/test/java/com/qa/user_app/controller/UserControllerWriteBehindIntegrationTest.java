@@ -0,0 +1,71 @@
+package com.qa.user_app.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qa.user_app.controller.request_object.UserRequest;
+import com.qa.user_app.service.dto.UserWriteStatus.State;
+
+// POST /user in write-behind mode, not @Transactional as the user is written by the
+// buffer's own thread and transaction
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:writeBehindDB",
+		"user.write-behind.enabled=true", "user.write-behind.flush-interval=5ms" })
+@AutoConfigureMockMvc
+@DirtiesContext
+public class UserControllerWriteBehindIntegrationTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Test
+	public void createUserWriteBehindTest() throws Exception {
+		MvcResult accepted = mockMvc.perform(MockMvcRequestBuilders.post("/user")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(new UserRequest("bob", "lee", 22))))
+				.andExpect(MockMvcResultMatchers.status().isAccepted())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.state").value("PENDING"))
+				.andReturn();
+		String location = accepted.getResponse().getHeader(HttpHeaders.LOCATION);
+		assertThat(location).startsWith("/user/pending/");
+
+		// the writer flushes within a few milliseconds
+		JsonNode status = null;
+		for (int attempt = 0; attempt < 100; attempt++) {
+			String body = mockMvc.perform(MockMvcRequestBuilders.get(location))
+					.andExpect(MockMvcResultMatchers.status().isOk())
+					.andReturn().getResponse().getContentAsString();
+			status = objectMapper.readTree(body);
+			if (!status.get("state").asText().equals(State.PENDING.name())) {
+				break;
+			}
+			Thread.sleep(50);
+		}
+		assertThat(status.get("state").asText()).isEqualTo(State.CREATED.name());
+
+		mockMvc.perform(MockMvcRequestBuilders.get("/user/" + status.get("userId").asInt()))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.forename").value("bob"));
+	}
+
+	@Test
+	public void unknownTrackingIdTest() throws Exception {
+		mockMvc.perform(MockMvcRequestBuilders.get("/user/pending/unknown"))
+				.andExpect(MockMvcResultMatchers.status().isNotFound());
+	}
+}
@@ -0,0 +1,74 @@
+package com.qa.user_app.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qa.user_app.controller.request_object.UserRequest;
+
+public class UserImportReaderTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private UserImportReader reader(String body, boolean csv) {
+		return new UserImportReader(new StringReader(body), csv, objectMapper.readerFor(UserRequest.class));
+	}
+
+	@Test
+	public void ndjsonTest() throws IOException {
+		UserImportReader reader = reader("{\"forename\":\"bob\",\"surname\":\"lee\",\"age\":22}\n"
+				+ "\r\n"
+				+ "{\"forename\":\"fred\",\r\n"
+				+ "{\"forename\":\"sarah\",\"surname\":\"fee\",\"age\":28}", false);
+
+		UserImportReader.Line bob = reader.next();
+		assertThat(bob.number).isEqualTo(1);
+		assertThat(bob.user).isEqualTo(new UserRequest("bob", "lee", 22));
+		// the blank line 2 is skipped
+		UserImportReader.Line fred = reader.next();
+		assertThat(fred.number).isEqualTo(3);
+		assertThat(fred.user).isNull();
+		assertThat(fred.error).startsWith("Invalid JSON");
+		UserImportReader.Line sarah = reader.next();
+		assertThat(sarah.number).isEqualTo(4);
+		assertThat(sarah.user).isEqualTo(new UserRequest("sarah", "fee", 28));
+		assertThat(reader.next()).isNull();
+	}
+
+	@Test
+	public void csvWithHeaderTest() throws IOException {
+		UserImportReader reader = reader("Age,Surname,Forename\n"
+				+ "22,lee,bob\n"
+				+ "25,\"o'see, jr\",\"fred \"\"freddy\"\"\"\n"
+				+ "old,fee,sarah\n", true);
+
+		assertThat(reader.next().user).isEqualTo(new UserRequest("bob", "lee", 22));
+		assertThat(reader.next().user).isEqualTo(new UserRequest("fred \"freddy\"", "o'see, jr", 25));
+		UserImportReader.Line sarah = reader.next();
+		assertThat(sarah.number).isEqualTo(4);
+		assertThat(sarah.error).isEqualTo("age: not a whole number");
+		assertThat(reader.next()).isNull();
+	}
+
+	@Test
+	public void csvWithoutHeaderTest() throws IOException {
+		UserImportReader reader = reader("bob,lee,22\nfred,\"see\n", true);
+
+		assertThat(reader.next().user).isEqualTo(new UserRequest("bob", "lee", 22));
+		assertThat(reader.next().error).isEqualTo("Unterminated quoted field");
+	}
+
+	@Test
+	public void overlongLineTest() throws IOException {
+		UserImportReader reader = reader("x".repeat(UserImportReader.MAX_LINE_LENGTH + 1) + "\nbob,lee,22", true);
+
+		assertThat(reader.next().error).startsWith("Line is longer than");
+		UserImportReader.Line bob = reader.next();
+		assertThat(bob.number).isEqualTo(2);
+		assertThat(bob.user).isEqualTo(new UserRequest("bob", "lee", 22));
+	}
+}
@@ -0,0 +1,120 @@
+package com.qa.user_app.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.data.repository.UserRepository;
+import com.qa.user_app.service.UserService;
+
+// /reactive/user, reading over R2DBC what was written through JPA to the same database
+// - not @Transactional, R2DBC can only see committed users
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:reactiveDB",
+		"user.reactive.url=r2dbc:h2:mem:///reactiveDB" })
+@AutoConfigureMockMvc
+@DirtiesContext
+public class UserReactiveHandlerIntegrationTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	private List<User> users;
+
+	@BeforeEach
+	public void init() {
+		userRepository.deleteAll();
+		List<User> newUsers = new ArrayList<>();
+		for (int i = 0; i < UserReactiveHandler.EXPORT_CHUNK_SIZE + 5; i++) {
+			newUsers.add(new User("reactive" + i, i % 2 == 0 ? "even" : "odd", 20 + i % 50));
+		}
+		users = userService.createAll(newUsers);
+	}
+
+	@Test
+	public void getUserByIdTest() throws Exception {
+		User user = users.get(0);
+		perform(MockMvcRequestBuilders.get(UserReactiveHandler.PATH + "/" + user.getId()))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, UserETags.of(user)))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.forename").value("reactive0"));
+
+		perform(MockMvcRequestBuilders.get(UserReactiveHandler.PATH + "/" + (users.get(users.size() - 1).getId() + 1)))
+				.andExpect(MockMvcResultMatchers.status().isNotFound());
+	}
+
+	@Test
+	public void getUsersPageTest() throws Exception {
+		MvcResult first = perform(MockMvcRequestBuilders.get(UserReactiveHandler.PATH).param("limit", "2"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(2))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(users.get(0).getId()))
+				.andExpect(MockMvcResultMatchers.header().string(UserController.NEXT_CURSOR_HEADER,
+						String.valueOf(users.get(1).getId())))
+				.andReturn();
+
+		perform(MockMvcRequestBuilders.get(UserReactiveHandler.PATH).param("limit", "2")
+				.param("after", first.getResponse().getHeader(UserController.NEXT_CURSOR_HEADER)))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(users.get(2).getId()));
+	}
+
+	@Test
+	public void searchUsersTest() throws Exception {
+		perform(MockMvcRequestBuilders.get(UserReactiveHandler.PATH + "/search").param("surname", "odd")
+				.param("limit", "3"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(3))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].forename").value("reactive1"))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[2].forename").value("reactive5"));
+
+		mockMvc.perform(MockMvcRequestBuilders.get(UserReactiveHandler.PATH + "/search"))
+				.andExpect(MockMvcResultMatchers.status().isBadRequest());
+		mockMvc.perform(MockMvcRequestBuilders.get(UserReactiveHandler.PATH).param("after", "first"))
+				.andExpect(MockMvcResultMatchers.status().isBadRequest());
+	}
+
+	@Test
+	public void exportUsersTest() throws Exception {
+		MvcResult result = perform(MockMvcRequestBuilders.get(UserReactiveHandler.PATH + "/export"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+				.andReturn();
+
+		// more users than fit in one chunk, every one on its own line in id order
+		String[] lines = result.getResponse().getContentAsString().split("\n");
+		assertThat(lines).hasSize(users.size());
+		assertThat(lines[0]).contains("\"id\":" + users.get(0).getId() + ",");
+		assertThat(lines[lines.length - 1]).contains("\"forename\":\"reactive" + (users.size() - 1) + "\"");
+	}
+
+	private ResultActions perform(MockHttpServletRequestBuilder request) throws Exception {
+		MvcResult started = mockMvc.perform(request)
+				.andExpect(MockMvcResultMatchers.request().asyncStarted())
+				.andReturn();
+		started.getAsyncResult();
+		return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(started));
+	}
+}
@@ -0,0 +1,166 @@
+package com.qa.user_app.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import com.qa.user_app.service.UserResponseCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+public class UserResponseCacheFilterTest {
+
+	private UserResponseCache cache;
+
+	private UserResponseCacheFilter filter;
+
+	// how many requests reached the "controller"
+	private AtomicInteger handled;
+
+	private String body;
+
+	private int status;
+
+	private String contentType;
+
+	// stands in for the controller, answering with the current body
+	private final FilterChain chain = (request, response) -> {
+		handled.incrementAndGet();
+		HttpServletResponse httpResponse = (HttpServletResponse) response;
+		httpResponse.setStatus(status);
+		httpResponse.setContentType(contentType);
+		httpResponse.setHeader(HttpHeaders.ETAG, "\"1\"");
+		httpResponse.getOutputStream().write(body.getBytes());
+	};
+
+	@BeforeEach
+	public void init() {
+		cache = new UserResponseCache(true, DataSize.ofMegabytes(1), Duration.ofMinutes(1),
+				new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class),
+				new StaticListableBeanFactory().getBeanProvider(CacheManager.class));
+		filter = new UserResponseCacheFilter(cache, true, new ServerProperties().getCompression().getMimeTypes());
+		handled = new AtomicInteger();
+		body = "{\"id\":1}";
+		status = 200;
+		contentType = MediaType.APPLICATION_JSON_VALUE;
+	}
+
+	private MockHttpServletResponse get(String uri, String... headers) throws ServletException, IOException {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+		for (int i = 0; i < headers.length; i += 2) {
+			request.addHeader(headers[i], headers[i + 1]);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, chain);
+		return response;
+	}
+
+	@Test
+	public void repeatedReadIsCachedTest() throws Exception {
+		MockHttpServletResponse first = get("/user/1");
+		body = "{\"id\":\"changed without a write\"}";
+		MockHttpServletResponse second = get("/user/1");
+
+		assertThat(handled).hasValue(1);
+		assertThat(second.getContentAsString()).isEqualTo("{\"id\":1}").isEqualTo(first.getContentAsString());
+		assertThat(second.getContentType()).isEqualTo(MediaType.APPLICATION_JSON_VALUE);
+		// made weak, the bytes of a hit aren't always those of the original
+		assertThat(second.getHeader(HttpHeaders.ETAG)).isEqualTo("W/\"1\"");
+		assertThat(second.getContentLength()).isEqualTo(8);
+	}
+
+	@Test
+	public void writeInvalidatesTest() throws Exception {
+		get("/user/1");
+		get("/user/2");
+		get("/user?limit=10");
+		cache.invalidate(1);
+		get("/user/1");
+		get("/user/2");
+		get("/user?limit=10");
+
+		// user 2 is in another stripe, the list is read again after any write
+		assertThat(handled).hasValue(5);
+	}
+
+	@Test
+	public void keyIncludesQueryAndAcceptTest() throws Exception {
+		get("/user?limit=10");
+		get("/user?limit=20");
+		get("/user?limit=10", HttpHeaders.ACCEPT, "application/cbor");
+		get("/user/search?surname=lee");
+
+		assertThat(handled).hasValue(4);
+	}
+
+	@Test
+	public void ifNoneMatchIsAnsweredFromCacheTest() throws Exception {
+		get("/user/1");
+		MockHttpServletResponse response = get("/user/1", HttpHeaders.IF_NONE_MATCH, "\"0\", W/\"1\"");
+
+		assertThat(handled).hasValue(1);
+		assertThat(response.getStatus()).isEqualTo(304);
+		assertThat(response.getContentLength()).isZero();
+	}
+
+	@Test
+	public void gzippedCopyTest() throws Exception {
+		body = "[" + "{\"id\":1,\"forename\":\"bob\"},".repeat(100) + "{\"id\":1}]";
+		get("/user");
+		MockHttpServletResponse response = get("/user", HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+
+		assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+		assertThat(response.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+		try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+			assertThat(new String(gzip.readAllBytes())).isEqualTo(body);
+		}
+		// small bodies aren't compressed
+		body = "{\"id\":1}";
+		get("/user/1");
+		assertThat(get("/user/1", HttpHeaders.ACCEPT_ENCODING, "gzip").getHeader(HttpHeaders.CONTENT_ENCODING))
+				.isNull();
+	}
+
+	@Test
+	public void onlyCompressibleTypesAreGzippedTest() throws Exception {
+		// a binary format such as Smile isn't in server.compression.mime-types, however large
+		body = "x".repeat(UserResponseCacheFilter.MIN_GZIP_SIZE * 2);
+		contentType = "application/x-jackson-smile";
+		get("/user");
+		MockHttpServletResponse response = get("/user", HttpHeaders.ACCEPT_ENCODING, "gzip");
+
+		assertThat(handled).hasValue(1);
+		assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+		assertThat(response.getContentAsString()).isEqualTo(body);
+	}
+
+	@Test
+	public void onlySuccessfulReadsAreCachedTest() throws Exception {
+		status = 404;
+		get("/user/1");
+		get("/user/1");
+		get("/user/export");
+		get("/user/suggest?q=bob");
+
+		assertThat(handled).hasValue(4);
+	}
+}
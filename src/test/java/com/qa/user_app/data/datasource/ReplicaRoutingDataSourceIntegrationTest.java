@@ -0,0 +1,173 @@
+package com.qa.user_app.data.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qa.user_app.controller.UserETags;
+import com.qa.user_app.controller.request_object.UserRequest;
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.service.UserService;
+import com.qa.user_app.service.UserSort;
+
+// Two H2 databases standing in for the primary and a replica, they aren't replicated so a
+// user only in the replica shows which database a read went to
+// - the replica has no replica_lag table until each test creates it, so it fails its checks
+//   and startup reads (id filter, name index) go to the primary
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:routingPrimaryDB",
+		"user.datasource.replicas[0].url=" + ReplicaRoutingDataSourceIntegrationTest.REPLICA_URL,
+		"user.datasource.replicas[0].username=sa",
+		"user.datasource.replica-lag-query=SELECT `lag_seconds` FROM `replica_lag`",
+		"user.datasource.replica-max-lag=5s",
+		// the tests check the replica themselves
+		"user.datasource.replica-check-interval=1h" })
+@AutoConfigureMockMvc
+@DirtiesContext
+public class ReplicaRoutingDataSourceIntegrationTest {
+
+	static final String REPLICA_URL = "jdbc:h2:mem:routingReplicaDB;DB_CLOSE_DELAY=-1";
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private ReplicaRoutingDataSource routingDataSource;
+
+	private JdbcTemplate replica;
+
+	@BeforeEach
+	public void init() {
+		routingDataSource = context.getBean(ReplicaRoutingDataSource.class);
+		DriverManagerDataSource replicaDataSource = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+		new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(replicaDataSource);
+		replica = new JdbcTemplate(replicaDataSource);
+		replica.execute("CREATE TABLE `replica_lag` (`lag_seconds` INT)");
+		replica.update("INSERT INTO `replica_lag` VALUES (0)");
+		replica.update("INSERT INTO `user` (`id`, `forename`, `surname`, `age`) VALUES (1000000, 'only', 'replica', 40)");
+		routingDataSource.checkReplicas();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		replica.execute("DROP ALL OBJECTS");
+		routingDataSource.checkReplicas();
+	}
+
+	@Test
+	public void readOnlyTransactionsUseReplicaTest() {
+		assertThat(routingDataSource.getAvailableReplicas()).containsExactly("replica-0");
+		assertThat(userService.getPage(null, 10, UserSort.ID).getUsers())
+				.extracting(User::getSurname)
+				.containsExactly("replica");
+	}
+
+	@Test
+	public void replicaReadsAreNotCachedTest() throws Exception {
+		mockMvc.perform(MockMvcRequestBuilders.get("/user"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].surname").value("replica"));
+		// replicated without a write through this instance, so nothing invalidates the response
+		replica.update("UPDATE `user` SET `surname` = 'replicated' WHERE `id` = 1000000");
+		mockMvc.perform(MockMvcRequestBuilders.get("/user"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].surname").value("replicated"));
+	}
+
+	@Test
+	public void writesUsePrimaryTest() {
+		User created = userService.create(new User("new", "primary", 30));
+		// not through a transaction, so also the primary
+		JdbcTemplate primary = new JdbcTemplate(dataSource);
+		assertThat(primary.queryForObject("SELECT COUNT(*) FROM `user` WHERE `id` = ?", Integer.class,
+				created.getId())).isEqualTo(1);
+		assertThat(replica.queryForObject("SELECT COUNT(*) FROM `user` WHERE `id` = ?", Integer.class,
+				created.getId())).isEqualTo(0);
+		primary.update("DELETE FROM `user` WHERE `id` = ?", created.getId());
+	}
+
+	@Test
+	public void readAfterUpdateIsNotCachedFromReplicaTest() throws Exception {
+		User created = userService.create(new User("old", "primary", 30));
+		// the replica hasn't caught up with the update below yet
+		replica.update("INSERT INTO `user` (`id`, `forename`, `surname`, `age`, `version`) VALUES (?, 'old', 'primary', 30, 0)",
+				created.getId());
+
+		String eTag = mockMvc.perform(MockMvcRequestBuilders.put("/user/" + created.getId())
+				.header(HttpHeaders.IF_MATCH, UserETags.of(created))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(new UserRequest("new", "primary", 31))))
+				.andExpect(MockMvcResultMatchers.status().isAccepted())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		// read from the primary, so the user cache holds the update and its ETag still matches
+		for (int i = 0; i < 2; i++) {
+			mockMvc.perform(MockMvcRequestBuilders.get("/user/" + created.getId()))
+					.andExpect(MockMvcResultMatchers.status().isOk())
+					.andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, eTag))
+					.andExpect(MockMvcResultMatchers.jsonPath("$.forename").value("new"));
+		}
+		mockMvc.perform(MockMvcRequestBuilders.put("/user/" + created.getId())
+				.header(HttpHeaders.IF_MATCH, eTag)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(new UserRequest("newer", "primary", 32))))
+				.andExpect(MockMvcResultMatchers.status().isAccepted());
+	}
+
+	@Test
+	public void laggingReplicaFallsBackToPrimaryTest() {
+		replica.update("UPDATE `replica_lag` SET `lag_seconds` = 60");
+		routingDataSource.checkReplicas();
+		assertThat(routingDataSource.getAvailableReplicas()).isEmpty();
+		// the users seeded into the primary by the dev profile
+		assertThat(userService.getPage(null, 10, UserSort.ID).getUsers())
+				.extracting(User::getSurname)
+				.doesNotContain("replica")
+				.contains("Daly");
+		replica.update("UPDATE `replica_lag` SET `lag_seconds` = 1");
+		routingDataSource.checkReplicas();
+		assertThat(userService.getPage(null, 10, UserSort.ID).getUsers())
+				.extracting(User::getSurname)
+				.containsExactly("replica");
+	}
+
+	@Test
+	public void replicaThatCantBeCheckedFallsBackToPrimaryTest() {
+		replica.execute("DROP TABLE `replica_lag`");
+		routingDataSource.checkReplicas();
+		assertThat(routingDataSource.getAvailableReplicas()).isEmpty();
+		assertThat(userService.getPage(null, 10, UserSort.ID).getUsers())
+				.extracting(User::getSurname)
+				.contains("Daly");
+	}
+}
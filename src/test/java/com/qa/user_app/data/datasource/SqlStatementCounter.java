@@ -0,0 +1,80 @@
+package com.qa.user_app.data.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.regex.Pattern;
+
+import org.springframework.boot.test.context.TestComponent;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.QueryType;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+
+// Counts the SQL statements the application runs, by type, so a test can pin how many
+// statements a request may run and an N+1 or a redundant existence check fails the build
+// - @Import(SqlStatementCounter.class) into a @SpringBootTest, it joins the DataSource proxy set
+//   up by SqlProfilingConfiguration
+// - reset() before the request, then assertStatements(selects, inserts, updates, deletes), plus
+//   others (DDL, calls and anything else) when some are expected
+// - statements on every thread are counted (outside a transaction UserService.getById reads on
+//   the batch loader's threads, see UserServiceCacheIntegrationTest), so two tests sharing a
+//   counter can't run at the same time
+// - a JDBC batch counts once, it is one round trip however many rows it has
+// - calls for the next block of ids from a pooled sequence aren't counted, whether a request
+//   makes one depends on how many ids were handed out before it
+@TestComponent
+public class SqlStatementCounter implements QueryExecutionListener {
+
+	private static final Pattern SEQUENCE_CALL = Pattern.compile("(?i)next value for|nextval");
+
+	private final AtomicIntegerArray counts = new AtomicIntegerArray(QueryType.values().length);
+
+	@Override
+	public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+	}
+
+	@Override
+	public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+		if (queryInfoList.isEmpty()) {
+			return;
+		}
+		String sql = queryInfoList.get(0).getQuery();
+		if (!SEQUENCE_CALL.matcher(sql).find()) {
+			counts.incrementAndGet(QueryUtils.getQueryType(sql).ordinal());
+		}
+	}
+
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+	}
+
+	public int count(QueryType type) {
+		return counts.get(type.ordinal());
+	}
+
+	// The statements run since the last reset, as "select=1, insert=0, update=0, delete=0, other=0"
+	public String describe() {
+		return describe(count(QueryType.SELECT), count(QueryType.INSERT), count(QueryType.UPDATE),
+				count(QueryType.DELETE), count(QueryType.OTHER));
+	}
+
+	public void assertStatements(int selects, int inserts, int updates, int deletes) {
+		assertStatements(selects, inserts, updates, deletes, 0);
+	}
+
+	public void assertStatements(int selects, int inserts, int updates, int deletes, int others) {
+		assertThat(describe()).as("SQL statements run")
+				.isEqualTo(describe(selects, inserts, updates, deletes, others));
+	}
+
+	private static String describe(int selects, int inserts, int updates, int deletes, int others) {
+		return "select=" + selects + ", insert=" + inserts + ", update=" + updates + ", delete=" + deletes
+				+ ", other=" + others;
+	}
+}
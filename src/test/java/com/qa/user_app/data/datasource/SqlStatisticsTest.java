@@ -0,0 +1,84 @@
+package com.qa.user_app.data.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class SqlStatisticsTest {
+
+	private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void normalizeTest() {
+		assertThat(SqlStatistics.normalize("select user0_.id as id1_0_0_\n  from user user0_ where user0_.id=?"))
+				.isEqualTo("select user0_.id as id1_0_0_ from user user0_ where user0_.id=?");
+		assertThat(SqlStatistics.normalize("select * from user where surname = 'O''Brien' and age > 30 limit 10"))
+				.isEqualTo("select * from user where surname = ? and age > ? limit ?");
+	}
+
+	@Test
+	public void normalizeParameterListsTest() {
+		assertThat(SqlStatistics.normalize("select * from user where id in (? , ?)"))
+				.isEqualTo(SqlStatistics.normalize("select * from user where id in (?, ?, ?, ?)"))
+				.isEqualTo("select * from user where id in (?, ...)");
+		assertThat(SqlStatistics.normalize("select * from user where id in (1, 2, 3)"))
+				.isEqualTo("select * from user where id in (?, ...)");
+	}
+
+	@Test
+	public void recordTest() {
+		SqlStatistics statistics = new SqlStatistics(10);
+		statistics.record("select * from user where id=1", 2 * MILLI);
+		statistics.record("select * from user where id=2", 4 * MILLI);
+		statistics.record("select * from user where id=3", 300 * MILLI);
+		statistics.record("select count(*) from user", MILLI);
+
+		List<SqlStatistics.Entry> statements = statistics.getStatements();
+		assertThat(statements).extracting(SqlStatistics.Entry::getSql)
+				.containsExactly("select * from user where id=?", "select count(*) from user");
+		SqlStatistics.Entry byId = statements.get(0);
+		assertThat(byId.getCount()).isEqualTo(3);
+		assertThat(byId.getTotalMillis()).isEqualTo(306.0);
+		assertThat(byId.getMeanMillis()).isEqualTo(102.0);
+		assertThat(byId.getMaxMillis()).isEqualTo(300.0);
+		assertThat(byId.getHistogram()).isEqualTo(Map.of("<=2.5ms", 1L, "<=5ms", 1L, "<=500ms", 1L));
+		assertThat(statements.get(1).getHistogram()).isEqualTo(Map.of("<=1ms", 1L));
+	}
+
+	@Test
+	public void slowestBucketHasNoBoundTest() {
+		SqlStatistics statistics = new SqlStatistics(10);
+		statistics.record("select 1", 20_000 * MILLI);
+
+		assertThat(statistics.getStatements().get(0).getHistogram()).isEqualTo(Map.of(">10s", 1L));
+	}
+
+	@Test
+	public void statementsOverMaxAreCountedTogetherTest() {
+		SqlStatistics statistics = new SqlStatistics(2);
+		statistics.record("select * from a", MILLI);
+		statistics.record("select * from b", MILLI);
+		statistics.record("select * from c", MILLI);
+		statistics.record("select * from d", MILLI);
+		statistics.record("select * from a", MILLI);
+
+		assertThat(statistics.getStatements()).extracting(SqlStatistics.Entry::getSql, SqlStatistics.Entry::getCount)
+				.containsExactlyInAnyOrder(tuple("select * from a", 2L),
+						tuple("select * from b", 1L),
+						tuple(SqlStatistics.OTHER, 2L));
+	}
+
+	@Test
+	public void resetTest() {
+		SqlStatistics statistics = new SqlStatistics(10);
+		statistics.record("select 1", MILLI);
+		statistics.reset();
+
+		assertThat(statistics.getStatements()).isEmpty();
+	}
+}
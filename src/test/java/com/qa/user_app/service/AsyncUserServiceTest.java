@@ -0,0 +1,47 @@
+package com.qa.user_app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.execptions.UserDatabaseBusyException;
+
+@ExtendWith(MockitoExtension.class)
+public class AsyncUserServiceTest {
+
+	@Mock
+	private UserService userService;
+
+	@Test
+	public void runsOnExecutorTest() {
+		User user = new User(1, "bob", "lee", 22);
+		when(userService.getById(1)).thenReturn(user);
+		AsyncUserService asyncUserService = new AsyncUserService(userService, Runnable::run);
+
+		assertThat(asyncUserService.getById(1).join()).isEqualTo(user);
+	}
+
+	@Test
+	public void fullExecutorIsBusyTest() {
+		Executor full = task -> {
+			throw new RejectedExecutionException("queue full");
+		};
+		AsyncUserService asyncUserService = new AsyncUserService(userService, full);
+
+		// only this executor's rejections are reported as the database being busy
+		assertThatThrownBy(() -> asyncUserService.getById(1)).isInstanceOf(UserDatabaseBusyException.class)
+				.hasCauseInstanceOf(RejectedExecutionException.class);
+		assertThatThrownBy(() -> asyncUserService.delete(1, null)).isInstanceOf(UserDatabaseBusyException.class);
+		verifyNoInteractions(userService);
+	}
+}
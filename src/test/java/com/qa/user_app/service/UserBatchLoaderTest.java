@@ -0,0 +1,102 @@
+package com.qa.user_app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.data.repository.UserRepository;
+
+@ExtendWith(MockitoExtension.class)
+public class UserBatchLoaderTest {
+
+	@Mock
+	private UserRepository userRepository;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	private UserBatchLoader userBatchLoader;
+
+	private List<User> users = List.of(new User(1, "bob", "lee", 22), new User(2, "fred", "see", 25),
+			new User(3, "sarah", "fee", 28));
+
+	@AfterEach
+	public void tearDown() {
+		userBatchLoader.shutdown();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void loadsWithinWindowAreBatchedTest() {
+		// a long window so every load below lands in the same batch
+		userBatchLoader = new UserBatchLoader(userRepository, transactionManager, Duration.ofMillis(200), 100, 1);
+		when(userRepository.findAllById(anyIterable())).thenReturn(users);
+
+		CompletableFuture<Optional<User>> first = userBatchLoader.load(1);
+		CompletableFuture<Optional<User>> second = userBatchLoader.load(2);
+		CompletableFuture<Optional<User>> missing = userBatchLoader.load(4);
+		// the same id shares the lookup already waiting
+		CompletableFuture<Optional<User>> firstAgain = userBatchLoader.load(1);
+
+		assertThat(firstAgain).isSameAs(first);
+		assertThat(first.join()).contains(users.get(0));
+		assertThat(second.join()).contains(users.get(1));
+		assertThat(missing.join()).isEmpty();
+
+		ArgumentCaptor<Iterable<Integer>> ids = ArgumentCaptor.forClass(Iterable.class);
+		verify(userRepository, times(1)).findAllById(ids.capture());
+		assertThat(ids.getValue()).containsExactlyInAnyOrder(1, 2, 4);
+	}
+
+	@Test
+	public void fullBatchIsSentStraightAwayTest() {
+		// the window is far longer than the test, only reaching the batch size can send it
+		userBatchLoader = new UserBatchLoader(userRepository, transactionManager, Duration.ofHours(1), 2, 1);
+		when(userRepository.findAllById(anyIterable())).thenReturn(users.subList(0, 2));
+
+		CompletableFuture<Optional<User>> first = userBatchLoader.load(1);
+		CompletableFuture<Optional<User>> second = userBatchLoader.load(2);
+
+		assertThat(first.join()).contains(users.get(0));
+		assertThat(second.join()).contains(users.get(1));
+	}
+
+	@Test
+	public void getAllKeepsOrderTest() {
+		userBatchLoader = new UserBatchLoader(userRepository, transactionManager, Duration.ofMillis(1), 100, 1);
+		when(userRepository.findAllById(anyIterable())).thenReturn(users);
+
+		assertThat(userBatchLoader.getAll(List.of(3, 4, 1))).containsExactly(users.get(2), users.get(0));
+	}
+
+	@Test
+	public void shutdownFailsWaitingLookupsTest() {
+		// the window outlasts the test, so the lookup is still waiting when the loader shuts down
+		userBatchLoader = new UserBatchLoader(userRepository, transactionManager, Duration.ofHours(1), 100, 1);
+
+		CompletableFuture<Optional<User>> waiting = userBatchLoader.load(1);
+		userBatchLoader.shutdown();
+
+		assertThat(waiting).isCompletedExceptionally();
+		assertThatThrownBy(() -> userBatchLoader.get(2)).isInstanceOf(IllegalStateException.class);
+		verify(userRepository, never()).findAllById(anyIterable());
+	}
+}
@@ -0,0 +1,72 @@
+package com.qa.user_app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.qa.user_app.data.repository.UserRepository;
+import com.qa.user_app.service.event.UserDeletedEvent;
+
+@ExtendWith(MockitoExtension.class)
+public class UserIdFilterTest {
+
+	@Mock
+	private UserRepository userRepository;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	private UserIdFilter userIdFilter;
+
+	@BeforeEach
+	public void init() {
+		userIdFilter = new UserIdFilter(userRepository, transactionManager, true);
+	}
+
+	@Test
+	public void everyIdMightExistBeforeRebuildTest() {
+		assertThat(userIdFilter.mightExist(1)).isTrue();
+		assertThat(userIdFilter.mightExist(1000)).isTrue();
+	}
+
+	@Test
+	public void rebuildTest() {
+		when(userRepository.streamAllIds()).thenReturn(Stream.of(1, 2, 51));
+		userIdFilter.rebuild();
+
+		assertThat(userIdFilter.mightExist(1)).isTrue();
+		assertThat(userIdFilter.mightExist(51)).isTrue();
+		assertThat(userIdFilter.mightExist(3)).isFalse();
+		// above the highest id seen the filter can't tell
+		assertThat(userIdFilter.mightExist(52)).isTrue();
+	}
+
+	@Test
+	public void addAndDeleteTest() {
+		when(userRepository.streamAllIds()).thenReturn(Stream.of(1, 2));
+		// added while the table was being read, it must survive the rebuild
+		userIdFilter.add(101);
+		userIdFilter.rebuild();
+		assertThat(userIdFilter.mightExist(101)).isTrue();
+		assertThat(userIdFilter.mightExist(100)).isFalse();
+
+		userIdFilter.userDeleted(new UserDeletedEvent(2));
+		assertThat(userIdFilter.mightExist(2)).isFalse();
+		assertThat(userIdFilter.mightExist(1)).isTrue();
+	}
+
+	@Test
+	public void disabledTest() {
+		userIdFilter = new UserIdFilter(userRepository, transactionManager, false);
+		userIdFilter.rebuild();
+		assertThat(userIdFilter.mightExist(3)).isTrue();
+	}
+}
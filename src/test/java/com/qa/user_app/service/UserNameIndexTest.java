@@ -0,0 +1,94 @@
+package com.qa.user_app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.data.repository.UserRepository;
+import com.qa.user_app.service.event.UserDeletedEvent;
+import com.qa.user_app.service.event.UserSavedEvent;
+
+@ExtendWith(MockitoExtension.class)
+public class UserNameIndexTest {
+
+	@Mock
+	private UserRepository userRepository;
+
+	@Mock
+	private EntityManager entityManager;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	private UserNameIndex userNameIndex;
+
+	private User fred = new User(1, "Fred", "Daly", 32);
+	private User sarah = new User(2, "Sarah", "Daly", 36);
+	private User freda = new User(3, "Freda", "Sir", 27);
+
+	@BeforeEach
+	public void init() {
+		userNameIndex = new UserNameIndex(userRepository, entityManager, transactionManager, true);
+		when(userRepository.streamAll()).thenReturn(Stream.of(fred, sarah, freda));
+		userNameIndex.rebuild();
+	}
+
+	@Test
+	public void prefixTest() {
+		// in name order, case doesn't matter
+		assertThat(userNameIndex.suggest("fre", 10)).containsExactly(fred, freda);
+		assertThat(userNameIndex.suggest("DAL", 10)).containsExactlyInAnyOrder(fred, sarah);
+		assertThat(userNameIndex.suggest("fre", 1)).containsExactly(fred);
+		assertThat(userNameIndex.suggest(" ", 10)).isEmpty();
+	}
+
+	@Test
+	public void everyWordMustMatchTest() {
+		assertThat(userNameIndex.suggest("sa daly", 10)).containsExactly(sarah);
+		assertThat(userNameIndex.suggest("fr si", 10)).containsExactly(freda);
+	}
+
+	@Test
+	public void typoTest() {
+		// no name starts with these, the nearest names by edit distance are suggested
+		assertThat(userNameIndex.suggest("sahra", 10)).containsExactly(sarah);
+		assertThat(userNameIndex.suggest("dali", 10)).containsExactlyInAnyOrder(fred, sarah);
+		assertThat(userNameIndex.suggest("xyzzy", 10)).isEmpty();
+	}
+
+	@Test
+	public void savedAndDeletedTest() {
+		User renamed = new User(1, "Alfred", "Daly", 33);
+		userNameIndex.userSaved(new UserSavedEvent(renamed));
+		userNameIndex.userSaved(new UserSavedEvent(new User(4, "Bob", "Sir", 27)));
+		userNameIndex.userDeleted(new UserDeletedEvent(3));
+
+		assertThat(userNameIndex.suggest("fred", 10)).isEmpty();
+		assertThat(userNameIndex.suggest("alf", 10)).containsExactly(renamed);
+		assertThat(userNameIndex.suggest("sir", 10)).containsExactly(new User(4, "Bob", "Sir", 27));
+	}
+
+	@Test
+	public void prefixEditDistanceTest() {
+		assertThat(UserNameIndex.prefixEditDistance("sarah", "sarah", 2)).isEqualTo(0);
+		// "sara" is one deletion away
+		assertThat(UserNameIndex.prefixEditDistance("sahra", "sarah", 2)).isEqualTo(1);
+		assertThat(UserNameIndex.prefixEditDistance("fred", "fried", 2)).isEqualTo(1);
+		// a partly typed name is as close as its start
+		assertThat(UserNameIndex.prefixEditDistance("frd", "freda", 2)).isEqualTo(1);
+		// anything further than the limit is reported as one more than it
+		assertThat(UserNameIndex.prefixEditDistance("bob", "sarah", 2)).isEqualTo(3);
+	}
+}
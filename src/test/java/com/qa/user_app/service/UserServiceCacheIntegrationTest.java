@@ -0,0 +1,136 @@
+package com.qa.user_app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.qa.user_app.data.datasource.SqlStatementCounter;
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.data.repository.UserRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Not @Transactional - cache updates only happen once a transaction commits, so
+// this test commits its changes and tidies up after itself instead
+@SpringBootTest
+@Import(SqlStatementCounter.class) // counts the statements run on the batch loader's threads too
+public class UserServiceCacheIntegrationTest {
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@SpyBean
+	private CacheManager cacheManager;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private SqlStatementCounter sqlStatements;
+
+	private User userInDatabase;
+
+	@BeforeEach
+	public void init() {
+		userInDatabase = userRepository.save(new User("bob", "lee", 22));
+		nativeCache().invalidateAll();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		userRepository.deleteAll();
+		nativeCache().invalidateAll();
+	}
+
+	@SuppressWarnings("unchecked")
+	private Cache<Object, Object> nativeCache() {
+		return (Cache<Object, Object>) cacheManager.getCache(UserService.USER_CACHE).getNativeCache();
+	}
+
+	@Test
+	public void getByIdCachesUserTest() {
+		int id = userInDatabase.getId();
+		CacheStats before = nativeCache().stats();
+
+		assertThat(userService.getById(id)).isEqualTo(userInDatabase);
+		assertThat(userService.getById(id)).isEqualTo(userInDatabase);
+
+		CacheStats stats = nativeCache().stats().minus(before);
+		assertThat(stats.missCount()).isEqualTo(1);
+		assertThat(stats.hitCount()).isEqualTo(1);
+		// the counters are published as metrics too
+		assertThat(meterRegistry.get("cache.gets").tag("cache", UserService.USER_CACHE).tag("result", "hit")
+				.functionCounter().count()).isGreaterThanOrEqualTo(1);
+	}
+
+	@Test
+	public void getByIdStatementsTest() {
+		int id = userInDatabase.getId();
+		sqlStatements.reset();
+
+		// outside a transaction, as for GET /user/{id}, a miss is one batched SELECT on the batch
+		// loader's thread and a hit runs nothing
+		assertThat(userService.getById(id)).isEqualTo(userInDatabase);
+		sqlStatements.assertStatements(1, 0, 0, 0);
+		assertThat(userService.getById(id)).isEqualTo(userInDatabase);
+		sqlStatements.assertStatements(1, 0, 0, 0);
+	}
+
+	@Test
+	public void updateEvictsCachedUserTest() {
+		int id = userInDatabase.getId();
+		userService.getById(id);
+
+		userService.update(id, new User("bob", "lee", 23), null);
+
+		assertThat(nativeCache().getIfPresent(id)).isNull();
+		assertThat(userService.getById(id).getAge()).isEqualTo(23);
+	}
+
+	@Test
+	public void userReadBeforeCacheEvictTest() {
+		int id = userInDatabase.getId();
+		userService.getById(id);
+		// another request reading the user just before @CacheEvict evicts it, which only happens once
+		// the transaction has ended, after UserResponseCache's committed listener
+		User[] read = new User[1];
+		doAnswer(getCache -> {
+			org.springframework.cache.Cache users = spy((org.springframework.cache.Cache) getCache.callRealMethod());
+			doAnswer(evict -> {
+				read[0] = CompletableFuture.supplyAsync(() -> userService.getById(id)).join();
+				return evict.callRealMethod();
+			}).when(users).evict(id);
+			return users;
+		}).when(cacheManager).getCache(UserService.USER_CACHE);
+
+		userService.update(id, new User("bob", "lee", 23), null);
+
+		assertThat(read[0].getAge()).isEqualTo(23);
+	}
+
+	@Test
+	public void deleteEvictsCachedUserTest() {
+		int id = userInDatabase.getId();
+		userService.getById(id);
+
+		userService.delete(id, null);
+
+		assertThat(nativeCache().getIfPresent(id)).isNull();
+	}
+}
@@ -4,11 +4,18 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
 import javax.transaction.Transactional;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +23,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 
 import com.qa.user_app.data.entity.User;
 import com.qa.user_app.data.repository.UserRepository;
+import com.qa.user_app.service.dto.UserPage;
 
 @SpringBootTest
 @Transactional
@@ -26,6 +34,15 @@ public class UserServiceIntegrationTest {
 
 	@Autowired
 	private UserRepository userRepository;
+	
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+	
+	@Autowired
+	private UserIdFilter userIdFilter;
+	
+	@PersistenceContext
+	private EntityManager entityManager;
 
 	private List<User> usersInDatabase;
 	private int nextNewElementsId;
@@ -33,8 +50,11 @@ public class UserServiceIntegrationTest {
 	// initialise the database for each test as it is rolled back afterwards
 	@BeforeEach
 	public void init() {
-		List<User> users = List.of(new User(1, "bob", "lee", 22), new User(2, "fred", "see", 25),
-				new User(3, "sarah", "fee", 28));
+		// remove the users seeded on startup by the dev profile, this is rolled back too
+		userRepository.deleteAllInBatch();
+		// ids are assigned by the user_seq sequence
+		List<User> users = List.of(new User("bob", "lee", 22), new User("fred", "see", 25),
+				new User("sarah", "fee", 28));
 		usersInDatabase = new ArrayList<>();
 		usersInDatabase.addAll(userRepository.saveAll(users));
 		int size = usersInDatabase.size();
@@ -46,6 +66,96 @@ public class UserServiceIntegrationTest {
 		assertThat(usersInDatabase).isEqualTo(userService.getAll());
 	}
 	
+	@Test
+	public void persistedUsersAreAddedToIdFilterTest() {
+		// added by UserIdListener as each user is persisted, before the transaction commits
+		for (User user : usersInDatabase) {
+			assertThat(userIdFilter.mightExist(user.getId())).isTrue();
+			assertThat(userService.getById(user.getId())).isEqualTo(user);
+		}
+	}
+	
+	@Test
+	public void getPageBySurnameTest() {
+		// surnames in the database are lee, see and fee
+		UserPage firstPage = userService.getPage(null, 2, UserSort.SURNAME);
+		assertThat(firstPage.getUsers()).containsExactly(usersInDatabase.get(2), usersInDatabase.get(0));
+		assertThat(firstPage.getNextCursor()).isEqualTo(usersInDatabase.get(0).getId());
+		
+		UserPage lastPage = userService.getPage(firstPage.getNextCursor(), 2, UserSort.SURNAME);
+		assertThat(lastPage.getUsers()).containsExactly(usersInDatabase.get(1));
+		assertThat(lastPage.hasNext()).isFalse();
+	}
+	
+	@Test
+	public void getPageByAgeTest() {
+		UserPage page = userService.getPage(usersInDatabase.get(0).getId(), 10, UserSort.AGE);
+		assertThat(page.getUsers()).containsExactly(usersInDatabase.get(1), usersInDatabase.get(2));
+		assertThat(page.hasNext()).isFalse();
+	}
+	
+	@Test
+	public void getPageFieldsTest() {
+		// only the surnames are read, in surname order (fee, lee, see) after the first user
+		UserPage page = userService.getPage(usersInDatabase.get(2).getId(), 1, UserSort.SURNAME,
+				EnumSet.of(UserField.SURNAME));
+		User projected = page.getUsers().get(0);
+		assertThat(projected.getId()).isEqualTo(usersInDatabase.get(0).getId());
+		assertThat(projected.getSurname()).isEqualTo("lee");
+		assertThat(projected.getForename()).isNull();
+		assertThat(projected.getVersion()).isNotNull();
+		// built from the row, not loaded as an entity
+		assertThat(entityManager.contains(projected)).isFalse();
+		assertThat(page.getNextCursor()).isEqualTo(projected.getId());
+	}
+	
+	@Test
+	public void searchFieldsTest() {
+		UserPage page = userService.search(null, null, 25, null, null, 10, EnumSet.of(UserField.AGE));
+		assertThat(page.getUsers()).extracting(User::getAge).containsExactly(25, 28);
+		assertThat(page.getUsers()).extracting(User::getSurname).containsOnlyNulls();
+	}
+	
+	@Test
+	public void searchTest() {
+		User sam = userRepository.save(new User("sam", "fee", 40));
+		// forename prefix and surname
+		assertThat(userService.search("fee", "sa", null, null, null, 10).getUsers())
+				.containsExactly(usersInDatabase.get(2), sam);
+		// age range, inclusive, a page at a time
+		UserPage firstPage = userService.search(null, null, 25, 40, null, 2);
+		assertThat(firstPage.getUsers()).containsExactly(usersInDatabase.get(1), usersInDatabase.get(2));
+		UserPage lastPage = userService.search(null, null, 25, 40, firstPage.getNextCursor(), 2);
+		assertThat(lastPage.getUsers()).containsExactly(sam);
+		assertThat(lastPage.hasNext()).isFalse();
+	}
+	
+	@Test
+	public void searchForenamePrefixIsLiteralTest() {
+		User underscore = userRepository.save(new User("s_m", "lee", 40));
+		// _ and % would be LIKE wildcards if they weren't escaped
+		assertThat(userService.search(null, "s_", null, null, null, 10).getUsers()).containsExactly(underscore);
+		assertThat(userService.search(null, "%", null, null, null, 10).getUsers()).isEmpty();
+	}
+	
+	@Test
+	public void suggestFromDatabaseTest() {
+		User sam = userRepository.save(new User("sam", "lee", 40));
+		// every prefix has to start the forename or surname, in surname then forename order
+		assertThat(userRepository.suggest(List.of("s"), 10)).containsExactly(usersInDatabase.get(2), sam,
+				usersInDatabase.get(1));
+		assertThat(userRepository.suggest(List.of("le", "sa"), 10)).containsExactly(sam);
+		assertThat(userRepository.suggest(List.of("s"), 1)).containsExactly(usersInDatabase.get(2));
+		assertThat(userRepository.suggest(List.of("_"), 10)).isEmpty();
+	}
+	
+	@Test
+	public void forEachTest() {
+		List<User> visited = new ArrayList<>();
+		userService.forEach(visited::add);
+		assertThat(visited).isEqualTo(usersInDatabase);
+	}
+	
 	@Test
 	public void createUserTest() {
 		User userToSave = new User("Janet", "Carlisle", 32);
@@ -54,6 +164,35 @@ public class UserServiceIntegrationTest {
 		assertThat(expectedUser).isEqualTo(userService.create(userToSave));
 	}
 	
+	@Test
+	public void createAllTest() {
+		int count = 2 * UserService.INSERT_BATCH_SIZE;
+		List<User> usersToSave = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			usersToSave.add(new User("Janet" + i, "Carlisle", 32));
+		}
+		
+		// write out the users from init() so only createAll is measured
+		userRepository.flush();
+		// hibernate statistics count the JDBC statements prepared on our behalf
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.setStatisticsEnabled(true);
+		statistics.clear();
+		try {
+			List<User> savedUsers = userService.createAll(usersToSave);
+			
+			assertThat(statistics.getEntityInsertCount()).isEqualTo(count);
+			// one INSERT statement per batch rather than per user, plus at most one
+			// sequence call per block of ids
+			assertThat(statistics.getPrepareStatementCount())
+					.isLessThanOrEqualTo(2 * (count / UserService.INSERT_BATCH_SIZE) + 1);
+			assertThat(savedUsers).hasSize(count).allMatch(user -> user.getId() != null);
+			assertThat(userRepository.count()).isEqualTo(usersInDatabase.size() + count);
+		} finally {
+			statistics.setStatisticsEnabled(false);
+		}
+	}
+	
 	@Test
 	public void getUserByIdTest() {
 		User userInDb = usersInDatabase.get(0);
@@ -67,7 +206,7 @@ public class UserServiceIntegrationTest {
 		User userWithUpdatesToMake = new User(userInDb.getId(), userInDb.getForename(), 
 				userInDb.getSurname(), userInDb.getAge()+1);
 		
-		User actual = userService.update(id, userWithUpdatesToMake);
+		User actual = userService.update(id, userWithUpdatesToMake, null);
 		assertThat(actual).isEqualTo(userWithUpdatesToMake);
 		
 	}
@@ -76,7 +215,7 @@ public class UserServiceIntegrationTest {
 	public void deleteUserTest() {
 		User userInDb = usersInDatabase.get(0);
 		int id = userInDb.getId();
-		userService.delete(id);
+		userService.delete(id, null);
 		assertThat(userRepository.findById(id)).isEqualTo(Optional.empty());
 	}
 }
\ No newline at end of file
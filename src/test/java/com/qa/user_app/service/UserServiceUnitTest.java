@@ -2,12 +2,18 @@ package com.qa.user_app.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,10 +22,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 
 import com.qa.user_app.data.entity.User;
 import com.qa.user_app.data.repository.UserRepository;
+import com.qa.user_app.execptions.UserModifiedException;
 import com.qa.user_app.execptions.UserNotFoundException;
+import com.qa.user_app.service.dto.UserPage;
+import com.qa.user_app.service.event.UserDeletedEvent;
 
 // No need to use the spring boot context, just create stubs using pure Mockito rather than Springs variant of Mockito
 @ExtendWith(MockitoExtension.class)
@@ -28,6 +39,23 @@ public class UserServiceUnitTest {
 	@Mock // equivalent to MockBean
 	private UserRepository userRepository;
 
+	// outside of a transaction lookups by id go through the batch loader
+	@Mock
+	private UserBatchLoader userBatchLoader;
+
+	// every id might exist unless a test says otherwise
+	@Mock
+	private UserIdFilter userIdFilter;
+
+	@Mock
+	private UserNameIndex userNameIndex;
+
+	@Mock
+	private ApplicationEventPublisher eventPublisher;
+
+	@Mock
+	private UserWriteBehindBuffer writeBehindBuffer;
+
 	@InjectMocks // equivalent to @Autowired
 	private UserService userService;
 
@@ -48,6 +76,7 @@ public class UserServiceUnitTest {
 		foundUser = new User(1, "bob", "lee", 22);
 		toUpdate = new User("bob", "lee", 23);
 		updatedUser = new User(1, "bob", "lee", 23);
+		lenient().when(userIdFilter.mightExist(anyInt())).thenReturn(true);
 	}
 
 	@Test
@@ -57,6 +86,64 @@ public class UserServiceUnitTest {
 		verify(userRepository).findAll();
 	}
 
+	@Test
+	public void getPageTest() {
+		// one more row than the page size is requested to detect the next page
+		when(userRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, 3))).thenReturn(users);
+		UserPage page = userService.getPage(null, 2, UserSort.ID);
+		assertThat(page.getUsers()).isEqualTo(users.subList(0, 2));
+		assertThat(page.getNextCursor()).isEqualTo(2);
+		verify(userRepository).findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, 3));
+	}
+
+	@Test
+	public void searchTest() {
+		// one more row than the page size is requested to detect the next page
+		when(userRepository.search("lee", "b", 18, 30, 5, 3)).thenReturn(users.subList(0, 2));
+		UserPage page = userService.search("lee", "b", 18, 30, 5, 2);
+		assertThat(page.getUsers()).isEqualTo(users.subList(0, 2));
+		assertThat(page.hasNext()).isFalse();
+		verify(userRepository).search("lee", "b", 18, 30, 5, 3);
+	}
+
+	@Test
+	public void suggestTest() {
+		when(userNameIndex.isEnabled()).thenReturn(true);
+		when(userNameIndex.suggest("bo", 10)).thenReturn(users.subList(0, 1));
+		assertThat(userService.suggest("bo", 10)).isEqualTo(users.subList(0, 1));
+		verify(userNameIndex).suggest("bo", 10);
+	}
+
+	@Test
+	public void suggestWithoutNameIndexTest() {
+		// the database is asked for each lower cased word as a name prefix
+		when(userRepository.suggest(List.of("bo", "l"), 10)).thenReturn(users.subList(0, 1));
+		assertThat(userService.suggest(" Bo  L ", 10)).isEqualTo(users.subList(0, 1));
+		assertThat(userService.suggest(" ", 10)).isEmpty();
+		verify(userNameIndex, never()).suggest(anyString(), anyInt());
+	}
+
+	@Test
+	public void getUsersByIdsTest() {
+		// duplicate ids are only asked for once
+		when(userBatchLoader.getAll(Set.of(1, 3))).thenReturn(List.of(users.get(0), users.get(2)));
+		assertThat(userService.getByIds(List.of(1, 3, 1))).containsExactly(users.get(0), users.get(2));
+		verify(userBatchLoader).getAll(Set.of(1, 3));
+	}
+
+	@Test
+	public void getUserByAbsentIdSkipsDatabaseTest() {
+		Integer id = 7;
+		when(userIdFilter.mightExist(id)).thenReturn(false);
+		UserNotFoundException e = Assertions.assertThrows(UserNotFoundException.class, () -> {
+			userService.getById(id);
+		});
+		assertThat(e.getMessage()).isEqualTo("User with id " + id + " does not exist");
+		// thrown often, so no stack trace is captured
+		assertThat(e.getStackTrace()).isEmpty();
+		verifyNoInteractions(userBatchLoader, userRepository);
+	}
+
 	@Test
 	public void createUserTest() {
 		when(userRepository.save(expectedUserWithoutId)).thenReturn(expectedUserWithId);
@@ -67,9 +154,9 @@ public class UserServiceUnitTest {
 	@Test
 	public void getUserByIdTest() {
 		int id = foundUser.getId();
-		when(userRepository.findById(id)).thenReturn(Optional.of(foundUser));
+		when(userBatchLoader.get(id)).thenReturn(Optional.of(foundUser));
 		assertThat(userService.getById(id)).isEqualTo(foundUser);
-		verify(userRepository).findById(id);
+		verify(userBatchLoader).get(id);
 	}
 	
 	@Test
@@ -79,7 +166,7 @@ public class UserServiceUnitTest {
 		
 		// Arrange (the data and components under test)
 		int id = 34;
-		when(userRepository.findById(id)).thenReturn(Optional.empty());
+		when(userBatchLoader.get(id)).thenReturn(Optional.empty());
 		
 		// Act (perform the action under test)
 		// assert that the code in the lambda (second param) throws the exception specified in
@@ -91,30 +178,104 @@ public class UserServiceUnitTest {
 		// Assert (the action was successful)
 		String expected = "User with id " + id + " does not exist";
 		assertThat(e.getMessage()).isEqualTo(expected);
-		verify(userRepository).findById(id);
+		verify(userBatchLoader).get(id);
 	}
 
 	@Test
 	public void updateUserTest() {
 		int id = foundUser.getId();
-		when(userRepository.existsById(id)).thenReturn(true);
-		when(userRepository.getById(id)).thenReturn(foundUser);
-		when(userRepository.save(foundUser)).thenReturn(updatedUser);
+		when(userRepository.updateById(id, toUpdate.getForename(), toUpdate.getSurname(), toUpdate.getAge()))
+				.thenReturn(1);
+
+		User actual = userService.update(id, toUpdate, null);
+
+		assertThat(actual).isEqualTo(updatedUser);
+		// no If-Match, so the new version isn't known without reading it back
+		assertThat(actual.getVersion()).isNull();
+		verify(userRepository).updateById(id, toUpdate.getForename(), toUpdate.getSurname(), toUpdate.getAge());
+	}
 
-		assertThat(userService.update(id, toUpdate)).isEqualTo(updatedUser);
+	@Test
+	public void updateUserInvalidIdTest() {
+		int id = 34;
+		when(userRepository.updateById(id, toUpdate.getForename(), toUpdate.getSurname(), toUpdate.getAge()))
+				.thenReturn(0);
+
+		UserNotFoundException e = Assertions.assertThrows(UserNotFoundException.class, () -> {
+			userService.update(id, toUpdate, null);
+		});
 
-		verify(userRepository).getById(id);
-		verify(userRepository).getById(id);
-		verify(userRepository).save(foundUser);
+		assertThat(e.getMessage()).isEqualTo("User with id " + id + " does not exist");
 	}
 
 	@Test
 	public void deleteUserTest() {
 		int id = foundUser.getId();
-		when(userRepository.existsById(id)).thenReturn(true);
-		userService.delete(id);
-		verify(userRepository).existsById(id);
-		verify(userRepository).deleteById(id);
+		when(userRepository.deleteUserById(id)).thenReturn(1);
+		userService.delete(id, null);
+		verify(userRepository).deleteUserById(id);
+		verify(eventPublisher).publishEvent(new UserDeletedEvent(id));
 		assertThat(Optional.empty()).isEqualTo(userRepository.findById(id));
 	}
+
+	@Test
+	public void deleteUserInvalidIdTest() {
+		int id = 34;
+		when(userRepository.deleteUserById(id)).thenReturn(0);
+
+		Assertions.assertThrows(UserNotFoundException.class, () -> {
+			userService.delete(id, null);
+		});
+		verify(userRepository).deleteUserById(id);
+	}
+
+	@Test
+	public void updateUserWithVersionTest() {
+		int id = foundUser.getId();
+		when(userRepository.updateByIdAndVersion(id, 2, toUpdate.getForename(), toUpdate.getSurname(),
+				toUpdate.getAge())).thenReturn(1);
+
+		User actual = userService.update(id, toUpdate, 2);
+
+		assertThat(actual).isEqualTo(updatedUser);
+		assertThat(actual.getVersion()).isEqualTo(3);
+	}
+
+	@Test
+	public void updateUserStaleVersionTest() {
+		int id = foundUser.getId();
+		when(userRepository.updateByIdAndVersion(id, 2, toUpdate.getForename(), toUpdate.getSurname(),
+				toUpdate.getAge())).thenReturn(0);
+		// the user is still there, so it must have been changed by somebody else
+		when(userRepository.existsById(id)).thenReturn(true);
+
+		Assertions.assertThrows(UserModifiedException.class, () -> {
+			userService.update(id, toUpdate, 2);
+		});
+	}
+
+	@Test
+	public void deleteUserStaleVersionTest() {
+		int id = foundUser.getId();
+		when(userRepository.deleteUserByIdAndVersion(id, 2)).thenReturn(0);
+		when(userRepository.existsById(id)).thenReturn(true);
+
+		Assertions.assertThrows(UserModifiedException.class, () -> {
+			userService.delete(id, 2);
+		});
+	}
+
+	@Test
+	public void enqueueTest() {
+		when(writeBehindBuffer.submit(expectedUserWithoutId)).thenReturn("abc");
+		assertThat(userService.enqueue(expectedUserWithoutId)).isEqualTo("abc");
+		// nothing is written until the buffer flushes
+		verifyNoInteractions(userRepository);
+	}
+
+	@Test
+	public void getWriteStatusUnknownTrackingIdTest() {
+		when(writeBehindBuffer.getStatus("abc")).thenReturn(null);
+		Assertions.assertThrows(UserNotFoundException.class, () -> userService.getWriteStatus("abc"));
+	}
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package com.qa.user_app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.qa.user_app.data.entity.User;
+import com.qa.user_app.execptions.UserBufferFullException;
+import com.qa.user_app.service.dto.UserWriteStatus;
+import com.qa.user_app.service.dto.UserWriteStatus.State;
+
+@ExtendWith(MockitoExtension.class)
+public class UserWriteBehindBufferTest {
+
+	@Mock
+	private UserService userService;
+
+	private UserWriteBehindBuffer buffer;
+
+	private final AtomicInteger nextId = new AtomicInteger(1);
+
+	@AfterEach
+	public void tearDown() {
+		buffer.stop();
+	}
+
+	private void start(int capacity, int batchSize, Duration flushInterval) {
+		buffer = new UserWriteBehindBuffer(userService, true, capacity, batchSize, flushInterval,
+				Duration.ofMinutes(1));
+		buffer.start();
+	}
+
+	// createAll as the database would do it, giving each user the next id
+	@SuppressWarnings("unchecked")
+	private List<User> saveAll(InvocationOnMock invocation) {
+		List<User> savedUsers = new ArrayList<>();
+		for (User user : (List<User>) invocation.getArgument(0)) {
+			savedUsers.add(new User(nextId.getAndIncrement(), user.getForename(), user.getSurname(), user.getAge()));
+		}
+		return savedUsers;
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void fullBatchIsWrittenTest() {
+		// a long interval, so only reaching the batch size writes the users
+		start(10, 3, Duration.ofHours(1));
+		when(userService.createAll(anyList())).thenAnswer(this::saveAll);
+
+		List<String> trackingIds = List.of(buffer.submit(new User("bob", "lee", 22)),
+				buffer.submit(new User("fred", "see", 25)), buffer.submit(new User("sarah", "fee", 28)));
+
+		ArgumentCaptor<List<User>> users = ArgumentCaptor.forClass(List.class);
+		verify(userService, timeout(5000)).createAll(users.capture());
+		assertThat(users.getValue()).extracting(User::getForename).containsExactly("bob", "fred", "sarah");
+		// the statuses are updated just after createAll returns
+		buffer.stop();
+		for (int i = 0; i < trackingIds.size(); i++) {
+			assertThat(buffer.getStatus(trackingIds.get(i)))
+					.isEqualTo(UserWriteStatus.created(trackingIds.get(i), i + 1));
+		}
+	}
+
+	@Test
+	public void partBatchIsWrittenAfterFlushIntervalTest() {
+		start(10, 50, Duration.ofMillis(20));
+		when(userService.createAll(anyList())).thenAnswer(this::saveAll);
+
+		String trackingId = buffer.submit(new User("bob", "lee", 22));
+		assertThat(buffer.getStatus(trackingId).getState()).isEqualTo(State.PENDING);
+
+		verify(userService, timeout(5000)).createAll(anyList());
+	}
+
+	@Test
+	public void fullBufferRejectsUsersTest() throws InterruptedException {
+		start(1, 1, Duration.ofMillis(20));
+		// hold the writer in its first batch
+		CountDownLatch writing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(userService.createAll(anyList())).thenAnswer(invocation -> {
+			writing.countDown();
+			release.await();
+			return saveAll(invocation);
+		});
+
+		buffer.submit(new User("bob", "lee", 22));
+		assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+		// fills the queue while the first user is being written
+		buffer.submit(new User("fred", "see", 25));
+		assertThrows(UserBufferFullException.class, () -> buffer.submit(new User("sarah", "fee", 28)));
+
+		release.countDown();
+	}
+
+	@Test
+	public void failedBatchIsRetriedOneAtATimeTest() {
+		start(10, 2, Duration.ofHours(1));
+		when(userService.createAll(anyList())).thenThrow(new IllegalStateException("check constraint"));
+		when(userService.create(any(User.class))).thenAnswer(invocation -> {
+			User user = invocation.getArgument(0);
+			if (user.getAge() > 130) {
+				throw new IllegalStateException("check constraint");
+			}
+			return new User(7, user.getForename(), user.getSurname(), user.getAge());
+		});
+
+		String valid = buffer.submit(new User("bob", "lee", 22));
+		String invalid = buffer.submit(new User("fred", "see", 200));
+		verify(userService, timeout(5000).times(2)).create(any(User.class));
+		buffer.stop();
+
+		assertThat(buffer.getStatus(valid)).isEqualTo(UserWriteStatus.created(valid, 7));
+		assertThat(buffer.getStatus(invalid).getState()).isEqualTo(State.FAILED);
+	}
+
+	@Test
+	public void stopWritesQueuedUsersTest() {
+		// nothing would be written for an hour without the stop
+		start(10, 50, Duration.ofHours(1));
+		doAnswer(this::saveAll).when(userService).createAll(anyList());
+
+		String trackingId = buffer.submit(new User("bob", "lee", 22));
+		buffer.stop();
+
+		assertThat(buffer.getStatus(trackingId).getState()).isEqualTo(State.CREATED);
+		assertThrows(UserBufferFullException.class, () -> buffer.submit(new User("fred", "see", 25)));
+	}
+}